@@ -1,18 +1,70 @@
 package de.admir.goverdrive.client
 
+import java.io.File
+import java.net.ConnectException
+
 import com.typesafe.scalalogging.StrictLogging
-import de.admir.goverdrive.scala.core.MappingProcessor
+import de.admir.goverdrive.scala.core.control.{ControlProtocol, ControlRequest}
+import de.admir.goverdrive.scala.core.{BulkMappingProcessor, MappingProcessor}
 import de.admir.goverdrive.scala.core.db.GoverdriveDb
 
+import scala.io.Source
+
 
+/**
+  * Requests are sent to a running daemon, mappings and imports are processed in this JVM if no daemon is running
+  */
 object ClientMain extends App with StrictLogging {
+    def sendToDaemon(request: ControlRequest)(withoutDaemon: => Unit): Unit =
+        ControlClient.send(request) match {
+            case Right(response) if ControlProtocol.isOk(response) =>
+                logger.info(response)
+            case Right(response) =>
+                logger.error(response)
+            case Left(_: ConnectException) =>
+                logger.info("No daemon is running, processing locally")
+                withoutDaemon
+            case Left(t) =>
+                logger.error("Error while sending request to the daemon", t)
+        }
+
+    /**
+      * The daemon runs in another working directory, so relative local paths are resolved before the lines are sent
+      */
+    def importMappings(lines: Seq[String]): Unit = {
+        val absoluteLines = lines map { line =>
+            val trimmedLine = line.trim
+            if (trimmedLine.isEmpty || trimmedLine.startsWith("#"))
+                line
+            else BulkMappingProcessor.parseMapping(trimmedLine) match {
+                case Right((localPath, remotePath)) => s"$localPath\t$remotePath"
+                case Left(_) => line
+            }
+        }
+        sendToDaemon(ControlRequest(ControlProtocol.IMPORT, body = absoluteLines)) {
+            logger.info(BulkMappingProcessor.processMappings(Source.fromString(absoluteLines.mkString("\n"))).toString)
+        }
+    }
+
     args match {
+        case Array("import") | Array("import", "-") =>
+            importMappings(Source.stdin.getLines().toList)
+        case Array("import", mappingsFile) =>
+            val source = Source.fromFile(mappingsFile)
+            try importMappings(source.getLines().toList) finally source.close()
+        case Array("status") =>
+            sendToDaemon(ControlRequest(ControlProtocol.STATUS))(logger.error("Status is only available from a running daemon"))
+        case Array("sync") =>
+            sendToDaemon(ControlRequest(ControlProtocol.SYNC))(logger.error("Sync can only be requested from a running daemon"))
         case Array(localPath, remotePath) =>
-            MappingProcessor.processMapping(localPath, remotePath) match {
-                case Left(clientError) =>
-                    logger.error(clientError.toString)
-                case Right(mappings) =>
-                    logger.info(mappings.toString())
+            val absoluteLocalPath = new File(localPath).getAbsolutePath
+            sendToDaemon(ControlRequest(ControlProtocol.MAP, Seq(absoluteLocalPath, remotePath))) {
+                MappingProcessor.processMapping(absoluteLocalPath, remotePath) match {
+                    case Left(clientError) =>
+                        logger.error(clientError.toString)
+                    case Right(mappingResult) =>
+                        logger.info(mappingResult.toString)
+                }
             }
         case Array("tearDown") => GoverdriveDb.tearDownDb()
         case _ => logger.error("Error while parsing input")
@@ -0,0 +1,27 @@
+package de.admir.goverdrive.client
+
+import java.io.{BufferedReader, IOException, InputStreamReader, OutputStreamWriter, PrintWriter}
+import java.net.{InetAddress, Socket}
+import java.nio.charset.StandardCharsets
+
+import de.admir.goverdrive.scala.core.control.{ControlProtocol, ControlRequest, ControlToken}
+import de.admir.goverdrive.scala.core.util.CoreUtils.catchNonFatal
+import net.java.truecommons.shed.ResourceLoan._
+
+
+/**
+  * Sends a request to the control endpoint of a running daemon, a ConnectException means that no daemon is running.
+  * The ControlToken is only read once connected, without a daemon there is no token to read.
+  */
+object ControlClient {
+    def send(request: ControlRequest): Throwable Either String = catchNonFatal {
+        loan(new Socket(InetAddress.getLoopbackAddress, ControlProtocol.port)) to { socket =>
+            val writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream, StandardCharsets.UTF_8))
+            ControlProtocol.formatRequest(ControlToken.read(), request).foreach(writer.println)
+            writer.flush()
+            socket.shutdownOutput()
+            Option(new BufferedReader(new InputStreamReader(socket.getInputStream, StandardCharsets.UTF_8)).readLine())
+                .getOrElse(throw new IOException("The daemon closed the control connection without a response"))
+        }
+    }
+}
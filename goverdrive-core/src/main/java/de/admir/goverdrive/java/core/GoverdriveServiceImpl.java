@@ -58,7 +58,7 @@ public class GoverdriveServiceImpl implements GoverdriveService {
         .handleFatal(() -> GoogleClientSecrets.load(JSON_FACTORY, new InputStreamReader(GoverdriveServiceImpl.class.getResourceAsStream("/client_creds.json"))),
             e -> logger.error(MarkerFactory.getMarker("FATAL"), "Could not instantiate CLIENT_SECRETS", e));
 
-    private static final String FILE_FIELDS = "id, kind, mimeType, name, parents, modifiedTime";
+    private static final String FILE_FIELDS = "id, kind, mimeType, name, parents, modifiedTime, md5Checksum, size";
 
     @Override
     public Xor<DriveError, ByteArrayOutputStream> getFileStream(String path) {
@@ -3,6 +3,8 @@ package de.admir.goverdrive.java.core.config;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
+import java.util.concurrent.TimeUnit;
+
 public class CoreConfig {
     public static final Config CONFIG = ConfigFactory.load();
 
@@ -10,7 +12,51 @@ public class CoreConfig {
         return CONFIG.getString("goverdrive.db.folder");
     }
 
+    public static String getDbStore() {
+        return CONFIG.getString("goverdrive.db.store");
+    }
+
     public static String getDbFilePath() {
         return CONFIG.getString("goverdrive.db.folder") + "/" + CONFIG.getString("goverdrive.db.schema") + ".db";
     }
+
+    public static int getBulkImportBatchSize() {
+        return CONFIG.getInt("goverdrive.bulkImport.batchSize");
+    }
+
+    public static int getBulkImportParallelism() {
+        return CONFIG.getInt("goverdrive.bulkImport.parallelism");
+    }
+
+    public static long getBulkImportTimeoutMillis() {
+        return CONFIG.getDuration("goverdrive.bulkImport.timeout", TimeUnit.MILLISECONDS);
+    }
+
+    public static long getBulkImportBatchTimeoutMillis() {
+        return CONFIG.getDuration("goverdrive.bulkImport.batchTimeout", TimeUnit.MILLISECONDS);
+    }
+
+    public static int getDaemonPartitionCount() {
+        return CONFIG.getInt("goverdrive.daemon.partitionCount");
+    }
+
+    public static long getDaemonLeaseDurationMillis() {
+        return CONFIG.getDuration("goverdrive.daemon.leaseDuration", TimeUnit.MILLISECONDS);
+    }
+
+    public static long getDaemonSyncIntervalMillis() {
+        return CONFIG.getDuration("goverdrive.daemon.syncInterval", TimeUnit.MILLISECONDS);
+    }
+
+    public static int getDaemonControlPort() {
+        return CONFIG.getInt("goverdrive.daemon.control.port");
+    }
+
+    public static String getControlTokenFilePath() {
+        return CONFIG.getString("goverdrive.credentials.folder") + "/control.token";
+    }
+
+    public static String getContentIndexLinkMode() {
+        return CONFIG.getString("goverdrive.daemon.contentIndex.linkMode");
+    }
 }
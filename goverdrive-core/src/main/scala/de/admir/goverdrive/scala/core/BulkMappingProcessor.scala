@@ -0,0 +1,186 @@
+package de.admir.goverdrive.scala.core
+
+import java.io.{File => JFile}
+import java.util.concurrent.{ConcurrentLinkedQueue, Executors}
+import java.util.concurrent.atomic.AtomicLong
+
+import com.google.api.services.drive.model.{File => GFile}
+import com.typesafe.scalalogging.StrictLogging
+import de.admir.goverdrive.java.core.config.CoreConfig
+import de.admir.goverdrive.scala.core.db.GoverdriveDb
+import de.admir.goverdrive.scala.core.feedback.CoreFeedback
+import de.admir.goverdrive.scala.core.implicits.FileLike._
+import de.admir.goverdrive.scala.core.model.{FileMapping, FolderMapping}
+import de.admir.goverdrive.scala.core.typeclasses.FileLike
+import de.admir.goverdrive.scala.core.util.CoreUtils.catchNonFatal
+import de.admir.goverdrive.scala.core.util.{CaseClassBeautifier, MappingType}
+
+import scala.collection.JavaConversions._
+import scala.concurrent.duration._
+import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.io.Source
+
+
+/**
+  * Imports many mappings at once. Every mapping is imported on an importer thread of its own and its tree is walked by a pool of walkers,
+  * the resulting fileMappings are written in batched transactions and already mapped local paths are skipped,
+  * so an interrupted import can be restarted.
+  */
+object BulkMappingProcessor extends StrictLogging {
+    private val batchSize = CoreConfig.getBulkImportBatchSize
+    private val parallelism = CoreConfig.getBulkImportParallelism
+    private val importTimeout = CoreConfig.getBulkImportTimeoutMillis.millis
+    private val batchTimeout = CoreConfig.getBulkImportBatchTimeoutMillis.millis
+
+    case class BulkImportResult(mappings: Int,
+                                insertedFileMappings: Long,
+                                skippedFileMappings: Long,
+                                feedbacks: Seq[CoreFeedback],
+                                elapsedMillis: Long,
+                                fileMappingsPerSecond: Double) {
+        override def toString: String = CaseClassBeautifier.nice(this)
+    }
+
+    private class BulkImportProgress {
+        private val startedAt = System.currentTimeMillis
+        val inserted = new AtomicLong()
+        val skipped = new AtomicLong()
+        val feedbacks = new ConcurrentLinkedQueue[CoreFeedback]()
+
+        def elapsedMillis: Long = System.currentTimeMillis - startedAt
+
+        def result(mappings: Int): BulkImportResult = {
+            val elapsed = elapsedMillis
+            BulkImportResult(mappings, inserted.get, skipped.get, feedbacks.toList, elapsed,
+                BulkImportProgress.perSecond(inserted.get + skipped.get, elapsed))
+        }
+
+        def record(batchSize: Int, insertedCount: Int): Unit = {
+            val totalInserted = inserted.addAndGet(insertedCount)
+            val totalSkipped = skipped.addAndGet(batchSize - insertedCount)
+            val elapsed = elapsedMillis
+            logger.info(f"Imported $totalInserted file mappings ($totalSkipped already existing) in ${elapsed / 1000.0}%.1fs, " +
+                f"${BulkImportProgress.perSecond(totalInserted + totalSkipped, elapsed)}%.1f mappings/s")
+        }
+    }
+
+    private object BulkImportProgress {
+        def perSecond(count: Long, elapsedMillis: Long): Double = if (elapsedMillis == 0) 0 else count * 1000.0 / elapsedMillis
+    }
+
+    /**
+      * Every non empty line that does not start with '#' is one mapping: "localPath remotePath", tab separated if the paths contain spaces
+      */
+    def parseMappings(source: Source): Seq[CoreFeedback Either (String, String)] =
+        source.getLines().map(_.trim).filterNot(line => line.isEmpty || line.startsWith("#")).map(parseMapping).toList
+
+    /**
+      * Relative local paths are resolved against the working directory of the calling process
+      */
+    def parseMapping(line: String): CoreFeedback Either (String, String) = {
+        val columns = if (line.contains('\t')) line.split('\t').map(_.trim) else line.split("\\s+")
+        columns match {
+            case Array(localPath, remotePath) => Right((new JFile(localPath).getAbsolutePath, remotePath))
+            case _ => Left(CoreFeedback(s"Could not parse mapping line: $line"))
+        }
+    }
+
+    def processMappings(source: Source): BulkImportResult = {
+        val parsedMappings = parseMappings(source)
+        val progress = new BulkImportProgress
+        parsedMappings.collect { case Left(coreFeedback) => coreFeedback }.foreach(progress.feedbacks.add)
+        val mappings = parsedMappings.collect { case Right(mapping) => mapping }
+
+        val importerExecutorService = Executors.newFixedThreadPool(parallelism)
+        val walkerExecutorService = Executors.newFixedThreadPool(parallelism)
+        implicit val ec = ExecutionContext.fromExecutorService(importerExecutorService)
+        val walkerEc = ExecutionContext.fromExecutorService(walkerExecutorService)
+        try {
+            val importFuture = Future.sequence {
+                mappings map { case (localPath, remotePath) =>
+                    Future(importMapping(localPath, remotePath, progress, walkerEc)) recover { case t =>
+                        progress.feedbacks.add(CoreFeedback(s"Error while importing mapping, localPath: $localPath, remotePath: $remotePath", t))
+                        ()
+                    }
+                }
+            }
+            Await.result(importFuture, importTimeout)
+        } finally {
+            importerExecutorService.shutdownNow()
+            walkerExecutorService.shutdownNow()
+        }
+
+        progress.result(mappings.size)
+    }
+
+    /**
+      * Runs on an importer thread of its own and blocks on the walk and on the writes, so the walkers never wait for a
+      * consumer that is itself waiting for a free thread. The folderMapping of a previous (interrupted) import is looked
+      * up first: once a sync has run both of its sides exist, which resolveMappingType rejects for new mappings
+      */
+    private def importMapping(localPath: String, remotePath: String, progress: BulkImportProgress, walkerEc: ExecutionContext): Unit =
+        Await.result(GoverdriveDb.getFolderMappingByLocalPathFuture(localPath), batchTimeout) match {
+            case Some(folderMapping) if folderMapping.remotePath == remotePath =>
+                logger.info(s"Resuming import of existing folder mapping: $folderMapping")
+                resumeFolderMapping(folderMapping, progress, walkerEc)
+            case Some(folderMapping) =>
+                progress.feedbacks.add(CoreFeedback(s"Local folder: $localPath is already mapped to another remote folder: ${folderMapping.remotePath}"))
+            case None => MappingProcessor.resolveMappingType(localPath, remotePath) match {
+                case Left(coreFeedback) =>
+                    progress.feedbacks.add(coreFeedback)
+                case Right(MappingType.FILE) =>
+                    insertBatches(Iterator(Seq(FileMapping(localPath = localPath, remotePath = remotePath))), progress)
+                case Right(MappingType.LOCAL_FOLDER) =>
+                    importFolderMapping[JFile](localPath, remotePath, progress, walkerEc)
+                case Right(MappingType.REMOTE_FOLDER) =>
+                    importFolderMapping[GFile](localPath, remotePath, progress, walkerEc)
+            }
+        }
+
+    private def importFolderMapping[F](localPath: String, remotePath: String, progress: BulkImportProgress, walkerEc: ExecutionContext)
+                                      (implicit ev: FileLike[F]): Unit =
+        catchNonFatal(Await.result(GoverdriveDb.insertFolderMappingFuture(FolderMapping(localPath = localPath, remotePath = remotePath)), batchTimeout))
+            .left.map(t => CoreFeedback(s"Error while inserting folder mapping, localPath: $localPath", t))
+            .right.flatMap(folderMapping => ev.folder(folderMapping).right.map((folderMapping, _))) match {
+            case Left(coreFeedback) =>
+                progress.feedbacks.add(coreFeedback)
+            case Right((folderMapping, folder)) =>
+                walkFolderMapping(folderMapping, folder, progress, walkerEc)
+        }
+
+    /**
+      * The stored folderMapping does not tell which side the interrupted import walked and a sync may already have copied
+      * part of that tree to the other side, so every existing side is walked. The fileMappings of files found on both
+      * sides are skipped as already existing.
+      */
+    private def resumeFolderMapping(folderMapping: FolderMapping, progress: BulkImportProgress, walkerEc: ExecutionContext): Unit =
+        (FileLikeJFile.folder(folderMapping), FileLikeGFile.folder(folderMapping)) match {
+            case (Left(localCoreFeedback), Left(remoteCoreFeedback)) =>
+                progress.feedbacks.add(CoreFeedback(s"Neither local nor remote folder of $folderMapping can be read", Seq(localCoreFeedback, remoteCoreFeedback)))
+            case (localFolder, remoteFolder) =>
+                localFolder.right.foreach(walkFolderMapping[JFile](folderMapping, _, progress, walkerEc))
+                remoteFolder.right.foreach(walkFolderMapping[GFile](folderMapping, _, progress, walkerEc))
+        }
+
+    private def walkFolderMapping[F](folderMapping: FolderMapping, folder: F, progress: BulkImportProgress, walkerEc: ExecutionContext)
+                                    (implicit ev: FileLike[F]): Unit = {
+        val fileTree = ev.parallelFileTreeIterator(folder, onlyFiles = true, bufferSize = batchSize)(walkerEc)
+        val fileMappings = fileTree flatMap {
+            case Left(coreFeedback) =>
+                progress.feedbacks.add(coreFeedback)
+                None
+            case Right(file) =>
+                Some(ev.relativeFolderFileMapping(file, folderMapping))
+        }
+        try insertBatches(fileMappings.grouped(batchSize), progress) finally fileTree.close()
+    }
+
+    /**
+      * Batches are written one after another per mapping, which keeps the number of fileMappings held in memory bounded
+      */
+    private def insertBatches(batches: Iterator[Seq[FileMapping]], progress: BulkImportProgress): Unit =
+        batches foreach { batch =>
+            val insertedCount = Await.result(GoverdriveDb.insertFileMappingsIfAbsentFuture(batch), batchTimeout)
+            progress.record(batch.size, insertedCount)
+        }
+}
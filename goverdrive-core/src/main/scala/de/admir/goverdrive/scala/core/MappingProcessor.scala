@@ -6,6 +6,8 @@ import de.admir.goverdrive.scala.core.MappingUtils._
 import de.admir.goverdrive.scala.core.db.GoverdriveDb
 import de.admir.goverdrive.scala.core.model.{FileMapping, FolderMapping}
 import de.admir.goverdrive.scala.core.util.FileType._
+import de.admir.goverdrive.scala.core.util.{CaseClassBeautifier, MappingType}
+import de.admir.goverdrive.scala.core.util.MappingType.MappingType
 import de.admir.goverdrive.scala.core.typeclasses.FileLike
 import de.admir.goverdrive.scala.core.implicits.FileLike._
 import java.io.{File => JFile}
@@ -15,7 +17,32 @@ import scala.util.Left
 
 
 object MappingProcessor extends StrictLogging {
-    def processMapping(localPath: String, remotePath: String): CoreFeedback Either Seq[CoreFeedback Either FileMapping] = {
+
+    /**
+      * Only the failures are kept, the created fileMappings are counted
+      */
+    case class MappingResult(fileMappings: Long, feedbacks: Seq[CoreFeedback]) {
+        override def toString: String = CaseClassBeautifier.nice(this)
+    }
+
+    def processMapping(localPath: String, remotePath: String): CoreFeedback Either MappingResult = {
+        resolveMappingType(localPath, remotePath).right map {
+            case MappingType.FILE =>
+                createFileMapping(FileMapping(localPath = localPath, remotePath = remotePath)) match {
+                    case Left(coreFeedback) => MappingResult(0, Seq(coreFeedback))
+                    case Right(_) => MappingResult(1, Nil)
+                }
+            case MappingType.LOCAL_FOLDER =>
+                createFolderMapping[JFile](localPath, remotePath)
+            case MappingType.REMOTE_FOLDER =>
+                createFolderMapping[GFile](localPath, remotePath)
+        }
+    }
+
+    /**
+      * Decides which side of the mapping is the origin, i.e. which file tree has to be walked to create the fileMappings
+      */
+    def resolveMappingType(localPath: String, remotePath: String): CoreFeedback Either MappingType = {
         (localExists(localPath), remoteExists(remotePath)) match {
             case (true, true) => (getLocalFileType(localPath), getRemoteFileType(remotePath)) match {
                 case (Right(localFileType), Right(remoteFileType)) if localFileType != remoteFileType =>
@@ -30,27 +57,27 @@ object MappingProcessor extends StrictLogging {
                 case (_, Left(coreError)) =>
                     Left(CoreFeedback(s"Error while getting fileType for remotePath: $remotePath", coreError))
                 case (Right(FILE), Right(FILE)) =>
-                    Right(Seq(createFileMapping(FileMapping(localPath = localPath, remotePath = remotePath))))
+                    Right(MappingType.FILE)
                 case (Right(FOLDER), Right(FOLDER)) if !new JFile(localPath).listFiles().isEmpty =>
                     Left(CoreFeedback("You can not sync a non empty local folder with an existing remote folder"))
                 case (Right(FOLDER), Right(FOLDER)) =>
-                    Right(createFolderMapping[GFile](localPath, remotePath))
+                    Right(MappingType.REMOTE_FOLDER)
             }
             case (true, false) => getLocalFileType(localPath) match {
                 case Left(coreError) =>
                     Left(CoreFeedback(s"Error while getting fileType for localPath: $localPath", coreError))
                 case Right(FILE) =>
-                    Right(Seq(createFileMapping(FileMapping(localPath = localPath, remotePath = remotePath))))
+                    Right(MappingType.FILE)
                 case Right(FOLDER) =>
-                    Right(createFolderMapping[JFile](localPath, remotePath))
+                    Right(MappingType.LOCAL_FOLDER)
             }
             case (false, true) => getRemoteFileType(remotePath) match {
                 case Left(coreError) =>
                     Left(CoreFeedback(s"Error while getting fileType for remotePath: $remotePath", coreError))
                 case Right(FILE) =>
-                    Right(Seq(createFileMapping(FileMapping(localPath = localPath, remotePath = remotePath))))
+                    Right(MappingType.FILE)
                 case Right(FOLDER) =>
-                    Right(createFolderMapping[GFile](localPath, remotePath))
+                    Right(MappingType.REMOTE_FOLDER)
             }
             case (false, false) =>
                 Left(CoreFeedback(s"Neither local nor remote file/folder does exist, localPath: $localPath, remotePath: $remotePath"))
@@ -58,21 +85,28 @@ object MappingProcessor extends StrictLogging {
     }
 
     private def createFolderMapping[F](localPath: String, remotePath: String)
-                                      (implicit ev: FileLike[F]): Seq[CoreFeedback Either FileMapping] = {
+                                      (implicit ev: FileLike[F]): MappingResult = {
         val folderMapping = FolderMapping(localPath = localPath, remotePath = remotePath)
         GoverdriveDb.insertFolderMapping(folderMapping) match {
             case Left(t) =>
-                Seq(Left(CoreFeedback("Error while inserting local folder", t)))
+                MappingResult(0, Seq(CoreFeedback("Error while inserting local folder", t)))
             case Right(persistedFolderMapping) =>
                 ev.folder(persistedFolderMapping) match {
                     case Left(coreFeedback) =>
-                        Seq(Left(coreFeedback))
-                    case Right(folder) => ev.fileTree(folder, onlyFiles = true) map {
-                        case Left(coreFeedback) =>
-                            Left(coreFeedback)
-                        case Right(file) =>
-                            createFileMapping(ev.relativeFolderFileMapping(file, persistedFolderMapping))
-                    }
+                        MappingResult(0, Seq(coreFeedback))
+                    case Right(folder) =>
+                        val feedbacks = Seq.newBuilder[CoreFeedback]
+                        var fileMappings = 0L
+                        ev.fileTreeIterator(folder, onlyFiles = true) foreach {
+                            case Left(coreFeedback) =>
+                                feedbacks += coreFeedback
+                            case Right(file) =>
+                                createFileMapping(ev.relativeFolderFileMapping(file, persistedFolderMapping)) match {
+                                    case Left(coreFeedback) => feedbacks += coreFeedback
+                                    case Right(_) => fileMappings += 1
+                                }
+                        }
+                        MappingResult(fileMappings, feedbacks.result())
                 }
         }
     }
@@ -0,0 +1,46 @@
+package de.admir.goverdrive.scala.core.control
+
+import de.admir.goverdrive.java.core.config.CoreConfig
+
+
+/**
+  * Line based protocol of the daemon control endpoint, one request per connection, all lines are UTF-8. The first line
+  * holds the ControlToken, the second the tab separated command and args, the following lines until the client shuts
+  * down its output are the body. The daemon answers with a single line starting with OK or ERROR and closes the connection.
+  */
+object ControlProtocol {
+    val MAP = "MAP"
+    val IMPORT = "IMPORT"
+    val STATUS = "STATUS"
+    val SYNC = "SYNC"
+
+    val OK = "OK"
+    val ERROR = "ERROR"
+
+    private val separator = "\t"
+
+    def port: Int = CoreConfig.getDaemonControlPort
+
+    def formatRequest(token: String, request: ControlRequest): Seq[String] =
+        token +: (request.command +: request.args).mkString(separator) +: request.body
+
+    /**
+      * Parses the lines after the token
+      */
+    def parseRequest(lines: Seq[String]): Option[ControlRequest] = lines match {
+        case Seq(header, body@_*) if header.nonEmpty =>
+            header.split(separator).toList match {
+                case command :: args => Some(ControlRequest(command, args, body))
+                case Nil => None
+            }
+        case _ => None
+    }
+
+    def ok(message: String): String = s"$OK ${singleLine(message)}"
+
+    def error(message: String): String = s"$ERROR ${singleLine(message)}"
+
+    def isOk(response: String): Boolean = response != null && response.startsWith(OK)
+
+    private def singleLine(message: String): String = message.replaceAll("\\s*[\\r\\n]+\\s*", " ")
+}
@@ -0,0 +1,10 @@
+package de.admir.goverdrive.scala.core.control
+
+import de.admir.goverdrive.scala.core.util.CaseClassBeautifier
+
+
+case class ControlRequest(command: String,
+                          args: Seq[String] = Nil,
+                          body: Seq[String] = Nil) {
+    override def toString: String = CaseClassBeautifier.nice(this)
+}
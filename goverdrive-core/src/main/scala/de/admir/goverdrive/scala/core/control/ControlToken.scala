@@ -0,0 +1,48 @@
+package de.admir.goverdrive.scala.core.control
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.attribute.PosixFilePermissions
+import java.nio.file.{FileSystems, Files, Path, Paths}
+import java.security.{MessageDigest, SecureRandom}
+
+import de.admir.goverdrive.java.core.config.CoreConfig
+
+
+/**
+  * Shared secret of the daemon control endpoint. The daemon writes a new random token on every start to a file in the
+  * credentials folder that only its owner can read, clients prove with it that they run as the same user.
+  */
+object ControlToken {
+    private val tokenBytes = 32
+    private val random = new SecureRandom()
+
+    private def tokenPath: Path = Paths.get(CoreConfig.getControlTokenFilePath)
+
+    def create(): String = {
+        val bytes = new Array[Byte](tokenBytes)
+        random.nextBytes(bytes)
+        val token = bytes.map("%02x".format(_)).mkString
+
+        Files.createDirectories(tokenPath.getParent)
+        Files.deleteIfExists(tokenPath)
+        if (FileSystems.getDefault.supportedFileAttributeViews.contains("posix"))
+            Files.createFile(tokenPath, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+        else {
+            val tokenFile = Files.createFile(tokenPath).toFile
+            tokenFile.setReadable(false, false)
+            tokenFile.setWritable(false, false)
+            tokenFile.setReadable(true, true)
+            tokenFile.setWritable(true, true)
+        }
+        Files.write(tokenPath, token.getBytes(StandardCharsets.UTF_8))
+        token
+    }
+
+    def read(): String = new String(Files.readAllBytes(tokenPath), StandardCharsets.UTF_8).trim
+
+    /**
+      * Compares in constant time, so the response time does not tell how much of a guessed token was right
+      */
+    def matches(token: String, candidate: String): Boolean =
+        MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), candidate.getBytes(StandardCharsets.UTF_8))
+}
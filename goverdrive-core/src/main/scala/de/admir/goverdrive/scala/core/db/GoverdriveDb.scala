@@ -3,24 +3,30 @@ package de.admir.goverdrive.scala.core.db
 import java.io.File
 import java.sql.Timestamp
 
+import com.typesafe.scalalogging.StrictLogging
 import de.admir.goverdrive.java.core.config.CoreConfig
-import slick.driver.SQLiteDriver.api._
+import slick.backend.DatabaseConfig
+import slick.driver.{JdbcProfile, SQLiteDriver}
 
 import scala.concurrent.{Await, Future}
 import scala.concurrent.duration._
-import de.admir.goverdrive.scala.core.model.{FileMapping, FolderMapping}
+import de.admir.goverdrive.scala.core.model.{DaemonWorker, FileMapping, FolderMapping, PartitionLease}
 import de.admir.goverdrive.scala.core.util.CoreUtils.catchNonFatal
+import net.java.truecommons.shed.ResourceLoan._
 import slick.jdbc.meta.MTable
-import slick.lifted.TableQuery
 
 import scala.concurrent.ExecutionContext.Implicits.global
 
 
-object GoverdriveDb {
+object GoverdriveDb extends StrictLogging {
     private val timeout = 30.seconds
     private val dbFile = new File(CoreConfig.getDbFilePath)
     private val dbFolder = new File(CoreConfig.getDbFolder)
-    private val db = Database.forConfig("goverdrive.db")
+    val dbConfig: DatabaseConfig[JdbcProfile] = DatabaseConfig.forConfig(s"goverdrive.db.${CoreConfig.getDbStore}")
+    // lazy, the embedded database file can only be opened once initDb has created its folder
+    private lazy val db = dbConfig.db
+
+    import dbConfig.driver.api._
 
     case class FolderMappings(tag: Tag) extends Table[FolderMapping](tag, "FOLDER_MAPPING") {
         def pk = column[Option[Int]]("PK", O.PrimaryKey, O.AutoInc)
@@ -47,16 +53,61 @@ object GoverdriveDb {
         def folderMappingFk = foreignKey("FOLDER_MAPPING_FK", folderMappingPk, folderMappings)(_.pk, onUpdate = ForeignKeyAction.Restrict, onDelete = ForeignKeyAction.Cascade)
         def fileIdIndex = index("IDX_FILE_ID", fileId, unique = true)
         def localPathIndex = index("IDX_FILE_LOCAL_PATH", localPath, unique = true)
+        def remotePathIndex = index("IDX_FILE_REMOTE_PATH", remotePath)
+        def folderMappingPkIndex = index("IDX_FILE_FOLDER_MAPPING_PK", folderMappingPk)
+        def syncedAtIndex = index("IDX_FILE_SYNCED_AT", syncedAt)
 
         override def * = (pk, fileId, localPath, remotePath, syncedAt, folderMappingPk) <> (FileMapping.tupled, FileMapping.unapply)
     }
 
     private val fileMappings = TableQuery[FileMappings]
 
+    case class PartitionLeases(tag: Tag) extends Table[PartitionLease](tag, "PARTITION_LEASE") {
+        def partition = column[Int]("PARTITION", O.PrimaryKey)
+        def workerId = column[String]("WORKER_ID")
+        def expiresAt = column[Timestamp]("EXPIRES_AT")
+
+        override def * = (partition, workerId, expiresAt) <> (PartitionLease.tupled, PartitionLease.unapply)
+    }
+
+    private val partitionLeases = TableQuery[PartitionLeases]
+
+    case class DaemonWorkers(tag: Tag) extends Table[DaemonWorker](tag, "DAEMON_WORKER") {
+        def workerId = column[String]("WORKER_ID", O.PrimaryKey)
+        def lastSeenAt = column[Timestamp]("LAST_SEEN_AT")
+
+        override def * = (workerId, lastSeenAt) <> (DaemonWorker.tupled, DaemonWorker.unapply)
+    }
+
+    private val daemonWorkers = TableQuery[DaemonWorkers]
+
     private val setupSchemaAction = DBIO.seq(
         (folderMappings.schema ++ fileMappings.schema).create
     )
 
+    private val setupLeaseSchemaAction = DBIO.seq(
+        (partitionLeases.schema ++ daemonWorkers.schema).create
+    )
+
+    /**
+      * Adds the lookup indexes to FILE_MAPPING tables that were created before they existed
+      */
+    private val setupFileMappingIndexesAction = DBIO.seq(
+        sqlu"""CREATE INDEX IF NOT EXISTS "IDX_FILE_REMOTE_PATH" ON "FILE_MAPPING" ("REMOTE_PATH")""",
+        sqlu"""CREATE INDEX IF NOT EXISTS "IDX_FILE_FOLDER_MAPPING_PK" ON "FILE_MAPPING" ("FOLDER_MAPPING_PK")""",
+        sqlu"""CREATE INDEX IF NOT EXISTS "IDX_FILE_SYNCED_AT" ON "FILE_MAPPING" ("SYNCED_AT")"""
+    )
+
+    private val fileMappingsByLocalPath = Compiled((localPath: Rep[String]) => fileMappings.filter(_.localPath === localPath))
+
+    private val fileMappingsByRemotePath = Compiled((remotePath: Rep[String]) => fileMappings.filter(_.remotePath === remotePath))
+
+    private val fileMappingsByFolderMappingPk = Compiled((folderMappingPk: Rep[Option[Int]]) => fileMappings.filter(_.folderMappingPk === folderMappingPk))
+
+    private val standaloneFileMappings = Compiled(fileMappings.filter(_.folderMappingPk.isEmpty))
+
+    private val fileMappingsSyncedSince = Compiled((since: Rep[Timestamp]) => fileMappings.filter(_.syncedAt > since))
+
     def tableNamesFuture: Future[Vector[String]] = db.run(MTable.getTables).map(_.map(_.name.name))
 
 
@@ -64,19 +115,44 @@ object GoverdriveDb {
 
     def getFileMappingsFuture: Future[Seq[FileMapping]] = db.run(fileMappings.result)
 
+    def countFileMappingsFuture: Future[Int] = db.run(fileMappings.length.result)
+
     def getFileMappings: Throwable Either Seq[FileMapping] = catchNonFatal {
         Await.result(getFileMappingsFuture, timeout)
     }
 
     def getFileMappingsByFolderMappingPkFuture(folderMappingPk: Option[Int]): Future[Seq[FileMapping]] = {
-        val queryAction = fileMappings.filter(_.folderMappingPk === folderMappingPk).result
+        val queryAction = fileMappingsByFolderMappingPk(folderMappingPk).result
         db.run(queryAction)
     }
 
+    /**
+      * The fileMappings that do not belong to a folderMapping, i.e. the mapped single files
+      */
+    def getStandaloneFileMappingsFuture: Future[Seq[FileMapping]] = db.run(standaloneFileMappings.result)
+
     def getFileMappingsByFolderMappingPk(pk: Option[Int]): Throwable Either Seq[FileMapping] = catchNonFatal {
         Await.result(getFileMappingsByFolderMappingPkFuture(pk), timeout)
     }
 
+    def getFileMappingByLocalPathFuture(localPath: String): Future[Option[FileMapping]] = {
+        val queryAction = fileMappingsByLocalPath(localPath).result.headOption
+        db.run(queryAction)
+    }
+
+    def getFileMappingsByRemotePathFuture(remotePath: String): Future[Seq[FileMapping]] = {
+        val queryAction = fileMappingsByRemotePath(remotePath).result
+        db.run(queryAction)
+    }
+
+    /**
+      * Returns the fileMappings that were synced after the given timestamp, the only point in time a fileMapping changes
+      */
+    def getFileMappingsSyncedSinceFuture(since: Timestamp): Future[Seq[FileMapping]] = {
+        val queryAction = fileMappingsSyncedSince(since).result
+        db.run(queryAction)
+    }
+
     def upsertFileMappingFuture(fileMapping: FileMapping): Future[FileMapping] = {
         val updateAction = (fileMappings returning fileMappings.map(_.pk)) insertOrUpdate fileMapping
         db.run(updateAction) map {
@@ -94,6 +170,39 @@ object GoverdriveDb {
         Await.result(insertFileMappingFuture(fileMapping), timeout)
     }
 
+    /**
+      * A single statement per fileMapping that skips already mapped local paths, a SELECT before the INSERT would make
+      * concurrent batches of the embedded store fail on their outdated WAL snapshot (SQLITE_BUSY_SNAPSHOT)
+      */
+    private val insertFileMappingIfAbsentSql = dbConfig.driver match {
+        case _: SQLiteDriver =>
+            """INSERT OR IGNORE INTO "FILE_MAPPING" ("FILE_ID", "LOCAL_PATH", "REMOTE_PATH", "SYNCED_AT", "FOLDER_MAPPING_PK") VALUES (?, ?, ?, ?, ?)"""
+        case _ =>
+            """INSERT INTO "FILE_MAPPING" ("FILE_ID", "LOCAL_PATH", "REMOTE_PATH", "SYNCED_AT", "FOLDER_MAPPING_PK") VALUES (?, ?, ?, ?, ?) ON CONFLICT ("LOCAL_PATH") DO NOTHING"""
+    }
+
+    /**
+      * Inserts the batch in a single transaction, skipping every fileMapping whose localPath is already mapped,
+      * so an interrupted bulk import can simply be run again. Returns the number of inserted rows.
+      */
+    def insertFileMappingsIfAbsentFuture(batch: Seq[FileMapping]): Future[Int] = {
+        val columnTypes = dbConfig.driver.columnTypes
+        val insertAction = SimpleDBIO { context =>
+            loan(context.connection.prepareStatement(insertFileMappingIfAbsentSql)) to { statement =>
+                batch foreach { fileMapping =>
+                    columnTypes.stringJdbcType.setOption(fileMapping.fileId, statement, 1)
+                    columnTypes.stringJdbcType.setValue(fileMapping.localPath, statement, 2)
+                    columnTypes.stringJdbcType.setValue(fileMapping.remotePath, statement, 3)
+                    columnTypes.timestampJdbcType.setOption(fileMapping.syncedAt, statement, 4)
+                    columnTypes.intJdbcType.setOption(fileMapping.folderMappingPk, statement, 5)
+                    statement.addBatch()
+                }
+                statement.executeBatch().count(_ > 0)
+            }
+        }
+        db.run(insertAction.transactionally)
+    }
+
     def deleteFileMappingFuture(pk: Option[Int]): Future[Int] = {
         val deleteAction = fileMappings.filter(_.pk === pk).delete
         db.run(deleteAction)
@@ -107,6 +216,8 @@ object GoverdriveDb {
 
     def getFolderMappingsFuture: Future[Seq[FolderMapping]] = db.run(folderMappings.result)
 
+    def countFolderMappingsFuture: Future[Int] = db.run(folderMappings.length.result)
+
     def getFolderMappingFuture(pk: Int): Future[Option[FolderMapping]] = {
         getFolderMappingFuture(Some(pk)).map(_.headOption)
     }
@@ -116,6 +227,11 @@ object GoverdriveDb {
         db.run(queryAction)
     }
 
+    def getFolderMappingByLocalPathFuture(localPath: String): Future[Option[FolderMapping]] = {
+        val queryAction = folderMappings.filter(_.localPath === localPath).result.headOption
+        db.run(queryAction)
+    }
+
     def updateFolderMappingFuture(folderMapping: FolderMapping): Future[Option[FolderMapping]] = {
         val updateAction = folderMappings.filter(_.pk === folderMapping.pk) update folderMapping
         db.run(updateAction).map {
@@ -138,6 +254,78 @@ object GoverdriveDb {
         db.run(deleteAction)
     }
 
+    // *** partitionLeases *** \\
+
+    /**
+      * Creates the missing lease rows for partitions 0 until partitionCount, unowned and already expired
+      */
+    def initPartitionLeasesFuture(partitionCount: Int): Future[Int] = {
+        val initAction = for {
+            existingPartitions <- partitionLeases.map(_.partition).result
+            absentLeases = (0 until partitionCount).filterNot(existingPartitions.contains).map(PartitionLease(_, "", new Timestamp(0)))
+            _ <- partitionLeases ++= absentLeases
+        } yield absentLeases.size
+        db.run(initAction.transactionally)
+    }
+
+    def getPartitionLeasesFuture: Future[Seq[PartitionLease]] = db.run(partitionLeases.result)
+
+    /**
+      * Epoch millis of the database clock, both stores keep timestamps as epoch based values
+      */
+    private val currentTimeMillisAction = dbConfig.driver match {
+        case _: SQLiteDriver => sql"SELECT CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)".as[Long].head
+        case _ => sql"SELECT CAST(EXTRACT(EPOCH FROM CURRENT_TIMESTAMP) * 1000 AS BIGINT)".as[Long].head
+    }
+
+    /**
+      * The clock all daemon workers share, lease expiry is decided against it instead of the local clock of a worker
+      */
+    def getDbTimeFuture: Future[Timestamp] = db.run(currentTimeMillisAction).map(new Timestamp(_))
+
+    /**
+      * Takes over or renews the leases that expired or are already held by the worker and returns the claimed partitions.
+      * Expiry and the new expiresAt are based on the database clock. Concurrent claims of the same expired lease are
+      * decided by the row lock, the loser updates 0 rows. All leases are claimed in one transaction, so the embedded
+      * store takes its single write lock once per refresh.
+      */
+    def claimPartitionLeasesFuture(partitions: Seq[Int], workerId: String, leaseDurationMillis: Long): Future[Seq[Int]] = {
+        val claimAction = currentTimeMillisAction flatMap { nowMillis =>
+            val now = new Timestamp(nowMillis)
+            val expiresAt = new Timestamp(nowMillis + leaseDurationMillis)
+            DBIO.sequence(partitions map { partition =>
+                partitionLeases
+                    .filter(lease => lease.partition === partition && (lease.expiresAt < now || lease.workerId === workerId))
+                    .map(lease => (lease.workerId, lease.expiresAt))
+                    .update((workerId, expiresAt))
+                    .map(claimedCount => if (claimedCount == 1) Some(partition) else None)
+            })
+        }
+        db.run(claimAction.transactionally).map(_.flatten)
+    }
+
+    def releasePartitionLeasesFuture(partitions: Seq[Int], workerId: String): Future[Int] = {
+        val releaseAction = partitionLeases
+            .filter(lease => lease.partition.inSet(partitions) && lease.workerId === workerId)
+            .map(_.expiresAt)
+            .update(new Timestamp(0))
+        db.run(releaseAction)
+    }
+
+    // *** daemonWorkers *** \\
+
+    def heartbeatDaemonWorkerFuture(daemonWorker: DaemonWorker): Future[Int] = db.run(daemonWorkers insertOrUpdate daemonWorker)
+
+    def getLiveDaemonWorkersFuture(seenSince: Timestamp): Future[Seq[DaemonWorker]] = {
+        val queryAction = daemonWorkers.filter(_.lastSeenAt > seenSince).result
+        db.run(queryAction)
+    }
+
+    /**
+      * Lets the other workers take over the partitions right away instead of waiting for the worker to time out
+      */
+    def removeDaemonWorkerFuture(workerId: String): Future[Int] = db.run(daemonWorkers.filter(_.workerId === workerId).delete)
+
     def initDb(): Unit = {
         def shouldSetupFolderStructure(): Boolean = !dbFolder.exists()
 
@@ -147,14 +335,28 @@ object GoverdriveDb {
 
         def setupDbSync(): Unit = Await.result(db.run(setupSchemaAction), timeout)
 
+        def shouldSetupLeaseDbSync(): Boolean = Await.result(tableNamesFuture.map(!_.contains("PARTITION_LEASE")), timeout)
+
+        def setupLeaseDbSync(): Unit = Await.result(db.run(setupLeaseSchemaAction), timeout)
+
+        def setupFileMappingIndexes(): Unit = catchNonFatal(Await.result(db.run(setupFileMappingIndexesAction), timeout)) match {
+            case Left(t) => logger.warn("Could not add the lookup indexes to FILE_MAPPING, lookups will scan the table", t)
+            case Right(_) =>
+        }
+
         if (shouldSetupFolderStructure())
             setupFolderStructure()
         if (shouldSetupDbSync())
             setupDbSync()
+        if (shouldSetupLeaseDbSync())
+            setupLeaseDbSync()
+        setupFileMappingIndexes()
     }
 
     def tearDownDb(): Unit = {
         dbFile.delete()
+        new File(dbFile.getPath + "-wal").delete()
+        new File(dbFile.getPath + "-shm").delete()
     }
 
     initDb()
@@ -1,6 +1,6 @@
 package de.admir.goverdrive.scala.core
 
-import java.io.{File => JFile}
+import java.io.{IOException, File => JFile}
 
 import com.google.api.services.drive.model.{File => GFile}
 import com.typesafe.scalalogging.StrictLogging
@@ -9,28 +9,11 @@ import de.admir.goverdrive.scala.core.feedback.CoreFeedback
 import de.admir.goverdrive.scala.core.model.{FileMapping, FolderMapping}
 import de.admir.goverdrive.scala.core.typeclasses.FileLike
 
-import scala.util.{Failure, Success, Try}
-
 package object implicits extends StrictLogging {
 
     object FileLike {
 
         implicit object FileLikeJFile extends FileLike[JFile] {
-            override def fileTree(file: JFile, onlyFiles: Boolean = false): Seq[CoreFeedback Either JFile] = {
-                def innerFileTree(file: JFile): Seq[CoreFeedback Either JFile] = {
-                    val tl = Try(if (file.isDirectory) file.listFiles().toList.flatMap(innerFileTree) else Nil) match {
-                        case Failure(t) => Seq(Left(CoreFeedback(t)))
-                        case Success(childFiles) => childFiles
-                    }
-                    if (file.isDirectory && onlyFiles)
-                        tl
-                    else
-                        Right(file) +: tl
-                }
-
-                innerFileTree(file)
-            }
-
             override def path(file: JFile): String = file.getAbsolutePath
 
             override def folder(folderMapping: FolderMapping): CoreFeedback Either JFile = {
@@ -53,25 +36,13 @@ package object implicits extends StrictLogging {
                 FileMapping(localPath = originPath, remotePath = absoluteRemotePath, folderMappingPk = folderMapping.pk)
             }
 
-            override protected def listFiles(file: JFile): Seq[JFile] = file.listFiles()
+            override protected def listFiles(file: JFile): Seq[JFile] = Option(file.listFiles()) match {
+                case Some(files) => files
+                case None => throw new IOException(s"Could not list files of local folder: ${file.getAbsolutePath}")
+            }
         }
 
         implicit object FileLikeGFile extends FileLike[GFile] {
-            override def fileTree(file: GFile, onlyFiles: Boolean = false): Seq[CoreFeedback Either GFile] = {
-                def innerFileTree(file: GFile): Seq[CoreFeedback Either GFile] = {
-                    val tl = Try(if (isDirectory(file)) listFiles(file).toList.flatMap(innerFileTree) else Nil) match {
-                        case Failure(t) => Seq(Left(CoreFeedback(t)))
-                        case Success(childFiles) => childFiles
-                    }
-                    if (isDirectory(file) && onlyFiles)
-                        tl
-                    else
-                        Right(file) +: tl
-                }
-
-                innerFileTree(file)
-            }
-
             override def path(file: GFile): String =
                 GoverdriveService.getAllFilesAndFolders match {
                     case Left(driveError) =>
@@ -0,0 +1,11 @@
+package de.admir.goverdrive.scala.core.model
+
+import java.sql.Timestamp
+
+import de.admir.goverdrive.scala.core.util.CaseClassBeautifier
+
+
+case class DaemonWorker(workerId: String,
+                        lastSeenAt: Timestamp) {
+    override def toString: String = CaseClassBeautifier.nice(this)
+}
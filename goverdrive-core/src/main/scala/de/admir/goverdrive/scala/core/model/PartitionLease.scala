@@ -0,0 +1,12 @@
+package de.admir.goverdrive.scala.core.model
+
+import java.sql.Timestamp
+
+import de.admir.goverdrive.scala.core.util.CaseClassBeautifier
+
+
+case class PartitionLease(partition: Int,
+                          workerId: String,
+                          expiresAt: Timestamp) {
+    override def toString: String = CaseClassBeautifier.nice(this)
+}
@@ -1,10 +1,133 @@
 package de.admir.goverdrive.scala.core.typeclasses
 
+import java.util.concurrent.{LinkedBlockingQueue, TimeUnit}
+import java.util.concurrent.atomic.AtomicInteger
+
 import de.admir.goverdrive.scala.core.feedback.CoreFeedback
 import de.admir.goverdrive.scala.core.model.{FileMapping, FolderMapping}
 
+import scala.concurrent.ExecutionContext
+import scala.util.control.NonFatal
+import scala.util.{Failure, Success, Try}
+
 trait FileLike[T] {
-    def fileTree(file: T, onlyFiles: Boolean = false): Seq[CoreFeedback Either T]
+    /**
+      * Walks the tree depth first while it is consumed, only the not yet visited siblings along the current path are kept in memory
+      */
+    def fileTreeIterator(file: T, onlyFiles: Boolean = false): Iterator[CoreFeedback Either T] = new Iterator[CoreFeedback Either T] {
+        private val unvisited = new java.util.ArrayDeque[CoreFeedback Either T]()
+        private var nextEntry: Option[CoreFeedback Either T] = None
+        unvisited.push(Right(file))
+
+        override def hasNext: Boolean = {
+            while (nextEntry.isEmpty && !unvisited.isEmpty)
+                nextEntry = visit(unvisited.pop())
+            nextEntry.isDefined
+        }
+
+        override def next(): CoreFeedback Either T = {
+            if (!hasNext)
+                throw new NoSuchElementException("No more entries in file tree")
+            val entry = nextEntry.get
+            nextEntry = None
+            entry
+        }
+
+        private def visit(entry: CoreFeedback Either T): Option[CoreFeedback Either T] = entry match {
+            case Right(current) if isDirectory(current) =>
+                Try(listFiles(current)) match {
+                    case Failure(t) => unvisited.push(Left(CoreFeedback(t)))
+                    case Success(children) => children.reverseIterator.foreach(child => unvisited.push(Right(child)))
+                }
+                if (onlyFiles) None else Some(entry)
+            case _ =>
+                Some(entry)
+        }
+    }
+
+    /**
+      * Lists the folders of the tree in parallel on the given ExecutionContext, the entries are handed over through a
+      * queue of bufferSize entries, so the walkers wait for a slow consumer. The consumer blocks while waiting for entries and
+      * must therefore not run on the given ExecutionContext. The order of the entries is not defined.
+      * Closing the iterator stops the walkers, which is required if it is not consumed until the end.
+      */
+    def parallelFileTreeIterator(file: T, onlyFiles: Boolean = false, bufferSize: Int = 1024)
+                                (implicit ec: ExecutionContext): Iterator[CoreFeedback Either T] with AutoCloseable =
+        new Iterator[CoreFeedback Either T] with AutoCloseable {
+            private val endOfTree: CoreFeedback Either T = Left(CoreFeedback("End of file tree"))
+            private val entries = new LinkedBlockingQueue[CoreFeedback Either T](bufferSize)
+            private val pendingVisits = new AtomicInteger(1)
+            @volatile private var closed = false
+            private var finished = false
+            private var nextEntry: Option[CoreFeedback Either T] = None
+            submit(file)
+
+            override def hasNext: Boolean = {
+                if (nextEntry.isEmpty && !finished) {
+                    val entry = entries.take()
+                    if (entry eq endOfTree)
+                        finished = true
+                    else
+                        nextEntry = Some(entry)
+                }
+                nextEntry.isDefined
+            }
+
+            override def next(): CoreFeedback Either T = {
+                if (!hasNext)
+                    throw new NoSuchElementException("No more entries in file tree")
+                val entry = nextEntry.get
+                nextEntry = None
+                entry
+            }
+
+            override def close(): Unit = {
+                closed = true
+                finished = true
+                nextEntry = None
+                entries.clear()
+            }
+
+            private def submit(current: T): Unit =
+                if (closed)
+                    visited()
+                else try {
+                    ec.execute(new Runnable {
+                        override def run(): Unit = visit(current)
+                    })
+                } catch {
+                    case NonFatal(t) =>
+                        enqueue(Left(CoreFeedback(s"Could not walk folder: ${path(current)}", t)))
+                        visited()
+                }
+
+            private def visit(current: T): Unit =
+                try {
+                    if (isDirectory(current)) {
+                        if (!onlyFiles)
+                            enqueue(Right(current))
+                        listFiles(current) foreach { child =>
+                            if (isDirectory(child)) {
+                                pendingVisits.incrementAndGet()
+                                submit(child)
+                            } else
+                                enqueue(Right(child))
+                        }
+                    } else
+                        enqueue(Right(current))
+                } catch {
+                    case NonFatal(t) => enqueue(Left(CoreFeedback(t)))
+                } finally {
+                    visited()
+                }
+
+            private def visited(): Unit =
+                if (pendingVisits.decrementAndGet() == 0)
+                    enqueue(endOfTree)
+
+            private def enqueue(entry: CoreFeedback Either T): Unit =
+                while (!closed && !entries.offer(entry, 100, TimeUnit.MILLISECONDS)) {}
+        }
 
     def path(file: T): String
 
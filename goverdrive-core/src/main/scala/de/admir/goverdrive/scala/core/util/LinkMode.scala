@@ -0,0 +1,16 @@
+package de.admir.goverdrive.scala.core.util
+
+import com.typesafe.config.ConfigException
+import de.admir.goverdrive.java.core.config.CoreConfig
+
+object LinkMode extends Enumeration {
+    type LinkMode = Value
+    val REFLINK = Value("reflink")
+    val COPY = Value("copy")
+
+    def configured: LinkMode = {
+        val linkMode = CoreConfig.getContentIndexLinkMode
+        values.find(_.toString == linkMode).getOrElse(
+            throw new ConfigException.BadValue("goverdrive.daemon.contentIndex.linkMode", s"must be one of ${values.mkString(", ")}"))
+    }
+}
@@ -0,0 +1,8 @@
+package de.admir.goverdrive.scala.core.util
+
+object MappingType extends Enumeration {
+    type MappingType = Value
+    val FILE = Value("file")
+    val LOCAL_FOLDER = Value("localFolder")
+    val REMOTE_FOLDER = Value("remoteFolder")
+}
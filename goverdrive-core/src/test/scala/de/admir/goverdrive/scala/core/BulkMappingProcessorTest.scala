@@ -0,0 +1,34 @@
+package de.admir.goverdrive.scala.core
+
+import java.io.File
+
+import org.junit.runner.RunWith
+import org.scalatest.FunSuite
+import org.scalatest.junit.JUnitRunner
+
+import scala.io.Source
+
+
+@RunWith(classOf[JUnitRunner])
+class BulkMappingProcessorTest extends FunSuite {
+
+    def parse(lines: String*) = BulkMappingProcessor.parseMappings(Source.fromString(lines.mkString("\n")))
+
+    test("parseMappings skips empty lines and comments") {
+        assert(parse("", "# local remote", "   ", "/local /remote") == Seq(Right(("/local", "/remote"))))
+    }
+
+    test("parseMappings splits on whitespace or on tabs if the paths contain spaces") {
+        assert(parse("/local   /remote", "/my local\t/my remote ") == Seq(Right(("/local", "/remote")), Right(("/my local", "/my remote"))))
+    }
+
+    test("parseMappings resolves relative local paths against the working directory") {
+        assert(parse("photos /remote/photos") == Seq(Right((new File("photos").getAbsolutePath, "/remote/photos"))))
+    }
+
+    test("parseMappings reports lines without exactly two paths") {
+        val mappings = parse("/only-local", "/local /remote /extra", "/local /remote")
+        assert(mappings.count(_.isLeft) == 2)
+        assert(mappings.last == Right(("/local", "/remote")))
+    }
+}
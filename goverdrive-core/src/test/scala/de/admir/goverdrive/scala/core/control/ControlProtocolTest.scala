@@ -0,0 +1,44 @@
+package de.admir.goverdrive.scala.core.control
+
+import org.junit.runner.RunWith
+import org.scalatest.FunSuite
+import org.scalatest.junit.JUnitRunner
+
+
+@RunWith(classOf[JUnitRunner])
+class ControlProtocolTest extends FunSuite {
+    import ControlProtocol._
+
+    test("formatRequest sends the token first, then the header and the body") {
+        val request = ControlRequest(IMPORT, Seq("a b", "c"), Seq("/local\t/remote", "/other /other"))
+        assert(formatRequest("token", request) == Seq("token", "IMPORT\ta b\tc", "/local\t/remote", "/other /other"))
+    }
+
+    test("parseRequest reads what formatRequest wrote after the token") {
+        Seq(
+            ControlRequest(STATUS),
+            ControlRequest(MAP, Seq("/lokal/Ärger", "/remote/ü")),
+            ControlRequest(IMPORT, body = Seq("/local /remote", ""))
+        ) foreach { request =>
+            assert(parseRequest(formatRequest("token", request).tail).contains(request))
+        }
+    }
+
+    test("parseRequest rejects a missing or empty header") {
+        assert(parseRequest(Nil).isEmpty)
+        assert(parseRequest(Seq("", "body")).isEmpty)
+    }
+
+    test("responses are single lines starting with OK or ERROR") {
+        assert(ok("first\n  second\r\nthird") == "OK first second third")
+        assert(isOk(ok("done")))
+        assert(!isOk(error("failed")))
+        assert(!isOk(null))
+    }
+
+    test("tokens only match exactly") {
+        assert(ControlToken.matches("secret", "secret"))
+        assert(!ControlToken.matches("secret", "secre"))
+        assert(!ControlToken.matches("secret", ""))
+    }
+}
@@ -0,0 +1,45 @@
+package de.admir.goverdrive.scala.core.db
+
+import de.admir.goverdrive.scala.core.model.FileMapping
+import org.junit.runner.RunWith
+import org.scalatest.junit.JUnitRunner
+import org.scalatest.{BeforeAndAfterAll, FunSuite}
+
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
+import scala.language.postfixOps
+
+
+/**
+  * Runs against the embedded store, every test maps its own local folder
+  */
+@RunWith(classOf[JUnitRunner])
+class GoverdriveDbTest extends FunSuite with BeforeAndAfterAll {
+
+    override def beforeAll(): Unit = GoverdriveDb.initDb()
+
+    def fileMappings(folder: String, range: Range): Seq[FileMapping] =
+        range.map(i => FileMapping(localPath = s"/$folder/$i", remotePath = s"/remote/$folder/$i"))
+
+    def insert(batch: Seq[FileMapping]): Int = Await.result(GoverdriveDb.insertFileMappingsIfAbsentFuture(batch), 30 seconds)
+
+    test("insertFileMappingsIfAbsentFuture skips already mapped local paths") {
+        assert(insert(fileMappings("skip", 0 until 10)) == 10)
+        assert(insert(fileMappings("skip", 5 until 15)) == 5)
+        assert(insert(fileMappings("skip", 0 until 15)) == 0)
+
+        val stored = Await.result(GoverdriveDb.getFileMappingByLocalPathFuture("/skip/7"), 30 seconds)
+        assert(stored.map(_.remotePath).contains("/remote/skip/7"))
+    }
+
+    test("insertFileMappingsIfAbsentFuture skips duplicates within a batch") {
+        assert(insert(fileMappings("duplicates", 0 until 3) ++ fileMappings("duplicates", 0 until 3)) == 3)
+    }
+
+    test("concurrent overlapping batches insert every local path exactly once") {
+        val batches = (0 until 8).map(i => fileMappings("concurrent", i * 500 until i * 500 + 1000))
+        val inserted = Await.result(Future.sequence(batches.map(GoverdriveDb.insertFileMappingsIfAbsentFuture)), 60 seconds)
+        assert(inserted.sum == 8 * 500 + 500)
+    }
+}
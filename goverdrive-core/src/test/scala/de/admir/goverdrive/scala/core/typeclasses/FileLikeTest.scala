@@ -0,0 +1,131 @@
+package de.admir.goverdrive.scala.core.typeclasses
+
+import java.io.IOException
+import java.util.concurrent.{Executors, TimeUnit}
+
+import de.admir.goverdrive.scala.core.feedback.CoreFeedback
+import de.admir.goverdrive.scala.core.model.{FileMapping, FolderMapping}
+import org.junit.runner.RunWith
+import org.scalatest.FunSuite
+import org.scalatest.junit.JUnitRunner
+
+import scala.concurrent.duration._
+import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.language.postfixOps
+
+
+@RunWith(classOf[JUnitRunner])
+class FileLikeTest extends FunSuite {
+
+    case class Node(path: String, children: Seq[Node] = Nil, isFolder: Boolean = false, unreadable: Boolean = false)
+
+    def file(path: String) = Node(path)
+
+    def folder(path: String, children: Node*) = Node(path, children, isFolder = true)
+
+    implicit object NodeFileLike extends FileLike[Node] {
+        override def path(file: Node): String = file.path
+
+        override def isDirectory(file: Node): Boolean = file.isFolder
+
+        override def folder(folderMapping: FolderMapping): CoreFeedback Either Node = Left(CoreFeedback("Not supported"))
+
+        override def origin: String = "memory"
+
+        override def relativeFolderFileMapping(file: Node, folderMapping: FolderMapping): FileMapping =
+            throw new UnsupportedOperationException
+
+        override protected def listFiles(file: Node): Seq[Node] =
+            if (file.unreadable) throw new IOException(s"Could not list ${file.path}") else file.children
+    }
+
+    val tree = folder("/",
+        folder("/a",
+            file("/a/1"),
+            folder("/a/b", file("/a/b/2"), file("/a/b/3"))),
+        file("/4"),
+        folder("/c"))
+
+    def paths(entries: TraversableOnce[CoreFeedback Either Node]): Seq[String] = entries.toList.collect { case Right(node) => node.path }
+
+    def wideTree(folderCount: Int, filesPerFolder: Int, prefix: String = ""): Node =
+        folder(s"$prefix/", (1 to folderCount).map(f => folder(s"$prefix/$f", (1 to filesPerFolder).map(i => file(s"$prefix/$f/$i")): _*)): _*)
+
+    def withWalkers[T](threads: Int)(test: ExecutionContext => T): T = {
+        val executorService = Executors.newFixedThreadPool(threads)
+        try test(ExecutionContext.fromExecutorService(executorService)) finally {
+            executorService.shutdownNow()
+            assert(executorService.awaitTermination(10, TimeUnit.SECONDS))
+        }
+    }
+
+    test("fileTreeIterator walks the tree depth first in listing order") {
+        assert(paths(NodeFileLike.fileTreeIterator(tree)) == Seq("/", "/a", "/a/1", "/a/b", "/a/b/2", "/a/b/3", "/4", "/c"))
+    }
+
+    test("fileTreeIterator only returns files if requested") {
+        assert(paths(NodeFileLike.fileTreeIterator(tree, onlyFiles = true)) == Seq("/a/1", "/a/b/2", "/a/b/3", "/4"))
+    }
+
+    test("fileTreeIterator reports an unreadable folder and continues with its siblings") {
+        val entries = NodeFileLike.fileTreeIterator(folder("/", Node("/x", isFolder = true, unreadable = true), file("/y")), onlyFiles = true).toList
+        assert(entries.count(_.isLeft) == 1)
+        assert(paths(entries) == Seq("/y"))
+    }
+
+    test("fileTreeIterator is exhausted after the last entry") {
+        val iterator = NodeFileLike.fileTreeIterator(file("/single"))
+        assert(paths(Seq(iterator.next())) == Seq("/single"))
+        assert(!iterator.hasNext)
+        intercept[NoSuchElementException](iterator.next())
+    }
+
+    test("parallelFileTreeIterator returns the same entries as fileTreeIterator") {
+        withWalkers(4) { implicit ec =>
+            val iterator = NodeFileLike.parallelFileTreeIterator(tree)
+            try assert(paths(iterator).sorted == paths(NodeFileLike.fileTreeIterator(tree)).sorted) finally iterator.close()
+        }
+    }
+
+    test("parallelFileTreeIterator waits for the consumer if the buffer is full") {
+        val wide = wideTree(folderCount = 50, filesPerFolder = 40)
+        withWalkers(2) { implicit ec =>
+            val iterator = NodeFileLike.parallelFileTreeIterator(wide, onlyFiles = true, bufferSize = 2)
+            try assert(paths(iterator).size == 50 * 40) finally iterator.close()
+        }
+    }
+
+    test("parallelFileTreeIterator reports an unreadable folder and terminates") {
+        withWalkers(2) { implicit ec =>
+            val iterator = NodeFileLike.parallelFileTreeIterator(folder("/", Node("/x", isFolder = true, unreadable = true), file("/y")), onlyFiles = true)
+            try {
+                val entries = iterator.toList
+                assert(entries.count(_.isLeft) == 1)
+                assert(paths(entries) == Seq("/y"))
+            } finally iterator.close()
+        }
+    }
+
+    test("parallelFileTreeIterator stops its walkers when closed before the end") {
+        withWalkers(2) { implicit ec =>
+            val iterator = NodeFileLike.parallelFileTreeIterator(wideTree(folderCount = 100, filesPerFolder = 100), onlyFiles = true, bufferSize = 1)
+            assert(iterator.hasNext)
+            iterator.close()
+            assert(!iterator.hasNext)
+        }
+    }
+
+    test("parallelFileTreeIterators sharing one walker are all consumed if every consumer has a thread of its own") {
+        val consumerExecutorService = Executors.newFixedThreadPool(4)
+        val consumerEc = ExecutionContext.fromExecutorService(consumerExecutorService)
+        try withWalkers(1) { implicit walkerEc =>
+            val counts = Future.sequence((1 to 4) map { i =>
+                Future {
+                    val iterator = NodeFileLike.parallelFileTreeIterator(wideTree(20, 20, s"/$i"), onlyFiles = true, bufferSize = 1)
+                    try iterator.size finally iterator.close()
+                }(consumerEc)
+            })(implicitly, consumerEc)
+            assert(Await.result(counts, 30 seconds) == Seq.fill(4)(20 * 20))
+        } finally consumerExecutorService.shutdownNow()
+    }
+}
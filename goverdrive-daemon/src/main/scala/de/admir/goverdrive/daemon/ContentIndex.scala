@@ -0,0 +1,116 @@
+package de.admir.goverdrive.daemon
+
+import java.io.{File => JFile}
+import java.nio.file.{Files, StandardCopyOption}
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+import com.google.api.services.drive.model.{File => GFile}
+import com.google.common.hash.Hashing
+import com.google.common.io.{Files => GuavaFiles}
+import com.typesafe.scalalogging.StrictLogging
+import de.admir.goverdrive.daemon.ContentIndex.ContentKey
+import de.admir.goverdrive.scala.core.model.FileMapping
+import de.admir.goverdrive.scala.core.{GoverdriveServiceWrapper => GoverdriveService}
+import de.admir.goverdrive.scala.core.util.CoreUtils.catchNonFatal
+import de.admir.goverdrive.scala.core.util.LinkMode
+import de.admir.goverdrive.scala.core.util.LinkMode.LinkMode
+
+import scala.util.{Failure, Success, Try}
+
+
+/**
+  * Maps the md5Checksum and size of remote files to local files that already hold the same content, so that downloading
+  * a duplicate can be replaced by a local copy. A local file may change at any time, also while it is copied, so the
+  * copy is written to a temporary file next to the target, verified against size and md5 and only then moved into place.
+  * The copy never shares its data with the source in a way a later write could reach, so only reflinks (copy on write)
+  * and plain copies are supported.
+  */
+class ContentIndex(linkMode: LinkMode) extends StrictLogging {
+    private val localPaths = new ConcurrentHashMap[ContentKey, String]()
+    private val savedBytes = new AtomicLong()
+
+    def savedDownloadBytes: Long = savedBytes.get
+
+    def add(driveFile: GFile, localPath: String): Unit =
+        ContentIndex.contentKey(driveFile).foreach(localPaths.put(_, localPath))
+
+    /**
+      * Copies already present content of the driveFile to the localPath, returns false if the content has to be downloaded.
+      * A candidate whose copy does not hold the content any more is dropped from the index.
+      */
+    def copyLocally(driveFile: GFile, localPath: String): Boolean =
+        ContentIndex.contentKey(driveFile).flatMap(key => Option(localPaths.get(key)).map((key, _))) match {
+            case Some((key, sourcePath)) if sourcePath != localPath =>
+                verifiedCopy(new JFile(sourcePath), new JFile(localPath), key) match {
+                    case Failure(t) =>
+                        logger.warn(s"Could not copy $sourcePath to $localPath, downloading instead", t)
+                        false
+                    case Success(false) =>
+                        logger.info(s"Content of $sourcePath changed since it was indexed, downloading $localPath instead")
+                        localPaths.remove(key, sourcePath)
+                        false
+                    case Success(true) =>
+                        logger.info(s"Copied already present content from $sourcePath to $localPath instead of downloading ${key.size} bytes")
+                        savedBytes.addAndGet(key.size)
+                        add(driveFile, localPath)
+                        true
+                }
+            case _ =>
+                false
+        }
+
+    private def verifiedCopy(source: JFile, target: JFile, key: ContentKey): Try[Boolean] =
+        if (!source.isFile || source.length != key.size) Success(false)
+        else Try {
+            val targetFolder = target.getAbsoluteFile.getParentFile
+            if (!targetFolder.exists()) targetFolder.mkdirs()
+            val tempFile = Files.createTempFile(targetFolder.toPath, s".${target.getName}.", ".goverdrive")
+            try {
+                copy(source, tempFile.toFile)
+                val copied = holdsContent(tempFile.toFile, key)
+                if (copied)
+                    Files.move(tempFile, target.toPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)
+                copied
+            } finally {
+                Files.deleteIfExists(tempFile)
+            }
+        }
+
+    private def holdsContent(file: JFile, key: ContentKey): Boolean =
+        file.isFile && file.length == key.size && catchNonFatal(GuavaFiles.asByteSource(file).hash(Hashing.md5()).toString).right.exists(_ == key.md5Checksum)
+
+    private def copy(source: JFile, target: JFile): Unit = linkMode match {
+        case LinkMode.REFLINK if Try(new ProcessBuilder("cp", "--reflink=always", source.getAbsolutePath, target.getAbsolutePath).start().waitFor() == 0).getOrElse(false) =>
+        case _ =>
+            Files.copy(source.toPath, target.toPath, StandardCopyOption.REPLACE_EXISTING)
+    }
+}
+
+object ContentIndex extends StrictLogging {
+    case class ContentKey(md5Checksum: String, size: Long)
+
+    def contentKey(driveFile: GFile): Option[ContentKey] = for {
+        md5Checksum <- Option(driveFile.getMd5Checksum)
+        size <- Option(driveFile.getSize)
+    } yield ContentKey(md5Checksum, size)
+
+    /**
+      * Indexes the local files of all synced fileMappings by the content of their remote counterpart
+      */
+    def apply(fileMappings: Seq[FileMapping]): ContentIndex = {
+        val contentIndex = new ContentIndex(LinkMode.configured)
+        GoverdriveService.getAllFilesAndFolders match {
+            case Left(driveError) =>
+                logger.warn(s"Could not build content index, all remote files will be downloaded, driveError: $driveError")
+            case Right(driveFiles) =>
+                val driveFilesById = driveFiles.map(driveFile => (driveFile.getId, driveFile)).toMap
+                for {
+                    fileMapping <- fileMappings
+                    fileId <- fileMapping.fileId
+                    driveFile <- driveFilesById.get(fileId)
+                } contentIndex.add(driveFile, fileMapping.localPath)
+        }
+        contentIndex
+    }
+}
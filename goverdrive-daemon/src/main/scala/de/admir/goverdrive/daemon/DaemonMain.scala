@@ -1,6 +1,9 @@
 package de.admir.goverdrive.daemon
 
 import com.typesafe.scalalogging.StrictLogging
+import de.admir.goverdrive.daemon.control.{ControlHandler, ControlServer}
+import de.admir.goverdrive.scala.core.control.{ControlProtocol, ControlToken}
+import de.admir.goverdrive.scala.core.util.LinkMode
 
 import scala.concurrent.Await
 import scala.concurrent.duration._
@@ -8,6 +11,20 @@ import scala.language.postfixOps
 
 
 object DaemonMain extends App with StrictLogging {
-    val result = Await.result(SyncService.sync, 10 minutes)
-    println(result)
+    // fails on an unknown linkMode before the first sync instead of in every sync
+    LinkMode.configured
+
+    args match {
+        case Array("serve") =>
+            val syncRunner = SyncRunner()
+            new ControlServer(ControlProtocol.port, ControlToken.create(), new ControlHandler(syncRunner)).start()
+            syncRunner.run()
+        case Array("partitioned") =>
+            PartitionedSyncWorker().run()
+        case Array("partitioned", workerId) =>
+            PartitionedSyncWorker(workerId).run()
+        case _ =>
+            val result = Await.result(SyncService.sync(), 10 minutes)
+            println(result)
+    }
 }
@@ -0,0 +1,82 @@
+package de.admir.goverdrive.daemon
+
+import java.sql.Timestamp
+
+import com.typesafe.scalalogging.StrictLogging
+import de.admir.goverdrive.scala.core.db.GoverdriveDb
+import de.admir.goverdrive.scala.core.model.{DaemonWorker, PartitionLease}
+
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.Future
+
+
+/**
+  * Keeps the partition leases of one daemon worker, all expiry decisions are based on the database clock.
+  * Every refresh renews the held leases and takes over expired leases (e.g. of dead workers) up to the fair share.
+  * Surplus leases are only given up by releaseSurplusLeases, which the sync loop calls between two passes, so a
+  * partition is not handed over during a pass. This relies on the renewals: a failed refresh drops all partitions, but
+  * a pass already running keeps syncing them and overlaps with the worker taking them over after the leases expired.
+  */
+class PartitionLeaseManager(val workerId: String, val partitionCount: Int, leaseDurationMillis: Long) extends StrictLogging {
+
+    @volatile private var ownedPartitions: Set[Int] = Set.empty
+
+    def scope: SyncScope = SyncScope(partitionCount, ownedPartitions)
+
+    def refreshLeases(): Future[Set[Int]] = updateOwnedPartitions("refreshing") {
+        for {
+            now <- GoverdriveDb.getDbTimeFuture
+            _ <- GoverdriveDb.heartbeatDaemonWorkerFuture(DaemonWorker(workerId, now))
+            _ <- GoverdriveDb.initPartitionLeasesFuture(partitionCount)
+            (fairShare, heldLeases, otherLeases) <- leaseState(now)
+            claimableLeases = otherLeases.filterNot(_.expiresAt.after(now)).take(fairShare - heldLeases.size)
+            claimed <- GoverdriveDb.claimPartitionLeasesFuture((heldLeases ++ claimableLeases).map(_.partition), workerId, leaseDurationMillis)
+        } yield claimed.toSet
+    }
+
+    /**
+      * Gives up the leases above the fair share, e.g. after another worker joined. Must not run during a sync pass.
+      */
+    def releaseSurplusLeases(): Future[Set[Int]] = updateOwnedPartitions("releasing surplus") {
+        for {
+            now <- GoverdriveDb.getDbTimeFuture
+            (fairShare, heldLeases, _) <- leaseState(now)
+            (keptLeases, surplusLeases) = heldLeases.sortBy(_.partition).splitAt(fairShare)
+            _ <- GoverdriveDb.releasePartitionLeasesFuture(surplusLeases.map(_.partition), workerId)
+        } yield keptLeases.map(_.partition).toSet
+    }
+
+    /**
+      * Releases every lease of the worker, also those still held after a failed refresh
+      */
+    def releaseLeases(): Future[Unit] = {
+        ownedPartitions = Set.empty
+        for {
+            _ <- GoverdriveDb.releasePartitionLeasesFuture(0 until partitionCount, workerId)
+            _ <- GoverdriveDb.removeDaemonWorkerFuture(workerId)
+        } yield ()
+    }
+
+    /**
+      * The fair share of partitions per live worker, the leases held by this worker and all other leases
+      */
+    private def leaseState(now: Timestamp): Future[(Int, Seq[PartitionLease], Seq[PartitionLease])] =
+        for {
+            liveWorkers <- GoverdriveDb.getLiveDaemonWorkersFuture(new Timestamp(now.getTime - leaseDurationMillis))
+            leases <- GoverdriveDb.getPartitionLeasesFuture
+            fairShare = Math.ceil(partitionCount.toDouble / Math.max(liveWorkers.size, 1)).toInt
+            (heldLeases, otherLeases) = leases.filter(_.partition < partitionCount).partition(lease => lease.workerId == workerId && lease.expiresAt.after(now))
+        } yield (fairShare, heldLeases, otherLeases)
+
+    private def updateOwnedPartitions(action: String)(partitionsFuture: Future[Set[Int]]): Future[Set[Int]] =
+        partitionsFuture.map { partitions =>
+            if (partitions != ownedPartitions)
+                logger.info(s"Worker: $workerId now holds partitions: ${partitions.toSeq.sorted.mkString(", ")}")
+            ownedPartitions = partitions
+            partitions
+        } recover { case t =>
+            logger.error(s"Error while $action leases of worker: $workerId, dropping all partitions", t)
+            ownedPartitions = Set.empty
+            ownedPartitions
+        }
+}
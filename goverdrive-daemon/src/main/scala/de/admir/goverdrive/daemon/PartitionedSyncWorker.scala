@@ -0,0 +1,102 @@
+package de.admir.goverdrive.daemon
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.{Callable, CountDownLatch, Executors, ThreadFactory, TimeUnit}
+
+import com.typesafe.scalalogging.StrictLogging
+import de.admir.goverdrive.java.core.config.CoreConfig
+
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
+import scala.language.postfixOps
+import scala.util.{Failure, Success, Try}
+
+
+/**
+  * Runs the sync in a loop, but only for the folder mappings in the partitions this worker currently leases.
+  * The leases are renewed on their own schedule so that a long sync pass does not let them expire. All lease changes
+  * run on the renewer thread, the sync loop hands the release of surplus partitions over to it between two passes.
+  * The partitions of a pass are those leased when it starts: a worker that fails to renew its leases finishes the
+  * running pass, even though another worker may take the partitions over once the leases expired.
+  */
+class PartitionedSyncWorker(leaseManager: PartitionLeaseManager,
+                            syncIntervalMillis: Long,
+                            leaseDurationMillis: Long,
+                            syncPass: SyncScope => Future[SyncResult] = SyncService.sync(_)) extends StrictLogging {
+
+    private val passTimeout = 10 minutes
+    private val stopRequested = new CountDownLatch(1)
+    private val stopped = new CountDownLatch(1)
+
+    private val leaseRenewer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory {
+        override def newThread(runnable: Runnable): Thread = {
+            val thread = new Thread(runnable, s"lease-renewer-${leaseManager.workerId}")
+            thread.setDaemon(true)
+            thread
+        }
+    })
+
+    def run(): Unit = {
+        onLeaseRenewer(leaseManager.refreshLeases())
+        leaseRenewer.scheduleAtFixedRate(new Runnable {
+            override def run(): Unit = Try(Await.result(leaseManager.refreshLeases(), 30 seconds)) match {
+                case Failure(t) => logger.error(s"Error while renewing leases of worker: ${leaseManager.workerId}", t)
+                case Success(_) =>
+            }
+        }, leaseDurationMillis / 3, leaseDurationMillis / 3, TimeUnit.MILLISECONDS)
+
+        val shutdownHook = sys.addShutdownHook(shutdown())
+        try {
+            while (stopRequested.getCount > 0) {
+                Try(syncOwnedPartitions()) match {
+                    case Failure(t) => logger.error(s"Error while syncing partitions of worker: ${leaseManager.workerId}", t)
+                    case Success(_) =>
+                }
+                stopRequested.await(syncIntervalMillis, TimeUnit.MILLISECONDS)
+            }
+        } finally {
+            // fails if the JVM is already shutting down, the hook is then waiting for this loop
+            Try(shutdownHook.remove())
+            stop()
+            stopped.countDown()
+        }
+    }
+
+    /**
+      * Lets the running sync pass finish, then stops the loop and waits until it released the leases
+      */
+    def shutdown(): Unit = {
+        stopRequested.countDown()
+        stopped.await((passTimeout + 1.minute).toMillis, TimeUnit.MILLISECONDS)
+    }
+
+    private def syncOwnedPartitions(): Unit = {
+        onLeaseRenewer(leaseManager.releaseSurplusLeases())
+        val scope = leaseManager.scope
+        if (scope.partitions.nonEmpty) {
+            val result = Await.result(syncPass(scope), passTimeout)
+            logger.info(s"Worker: ${leaseManager.workerId} synced partitions: ${scope.partitions.toSeq.sorted.mkString(", ")}, result: $result")
+        }
+    }
+
+    private def onLeaseRenewer(leaseChange: => Future[Set[Int]]): Set[Int] =
+        leaseRenewer.submit(new Callable[Set[Int]] {
+            override def call(): Set[Int] = Await.result(leaseChange, 30 seconds)
+        }).get()
+
+    private def stop(): Unit = {
+        leaseRenewer.shutdownNow()
+        Try(Await.result(leaseManager.releaseLeases(), 30 seconds)) match {
+            case Failure(t) => logger.error(s"Error while releasing leases of worker: ${leaseManager.workerId}", t)
+            case Success(_) => logger.info(s"Worker: ${leaseManager.workerId} released its leases")
+        }
+    }
+}
+
+object PartitionedSyncWorker {
+    def apply(workerId: String = ManagementFactory.getRuntimeMXBean.getName): PartitionedSyncWorker = {
+        val leaseDurationMillis = CoreConfig.getDaemonLeaseDurationMillis
+        new PartitionedSyncWorker(new PartitionLeaseManager(workerId, CoreConfig.getDaemonPartitionCount, leaseDurationMillis),
+            CoreConfig.getDaemonSyncIntervalMillis, leaseDurationMillis)
+    }
+}
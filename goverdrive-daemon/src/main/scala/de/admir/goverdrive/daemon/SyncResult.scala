@@ -9,7 +9,8 @@ case class SyncResult(deletedLocalFiles: FileDeletes,
                       deletedFoldersOnLocal: FolderDeletes,
                       deletedFoldersOnRemote: FolderDeletes,
                       syncedToRemoteFiles: FileSyncs,
-                      syncedToLocalFiles: FileSyncs) {
+                      syncedToLocalFiles: FileSyncs,
+                      savedDownloadBytes: Long = 0) {
 }
 
 object SyncResult {
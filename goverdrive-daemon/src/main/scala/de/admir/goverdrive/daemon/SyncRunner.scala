@@ -0,0 +1,41 @@
+package de.admir.goverdrive.daemon
+
+import java.sql.Timestamp
+
+import com.typesafe.scalalogging.StrictLogging
+import de.admir.goverdrive.java.core.config.CoreConfig
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.language.postfixOps
+import scala.util.{Failure, Success, Try}
+
+
+/**
+  * Syncs periodically and on demand, a sync requested while another one is running waits for it to finish
+  */
+class SyncRunner(syncIntervalMillis: Long) extends StrictLogging {
+
+    @volatile private var lastSync: Option[(Timestamp, SyncResult)] = None
+
+    def lastSyncResult: Option[(Timestamp, SyncResult)] = lastSync
+
+    def syncNow(): SyncResult = synchronized {
+        val result = Await.result(SyncService.sync(), 10 minutes)
+        lastSync = Some((new Timestamp(System.currentTimeMillis), result))
+        result
+    }
+
+    def run(): Unit =
+        while (true) {
+            Try(syncNow()) match {
+                case Failure(t) => logger.error("Error while syncing", t)
+                case Success(result) => logger.info(result.toString)
+            }
+            Thread.sleep(syncIntervalMillis)
+        }
+}
+
+object SyncRunner {
+    def apply(): SyncRunner = new SyncRunner(CoreConfig.getDaemonSyncIntervalMillis)
+}
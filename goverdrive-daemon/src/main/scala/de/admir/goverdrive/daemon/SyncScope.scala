@@ -0,0 +1,22 @@
+package de.admir.goverdrive.daemon
+
+import de.admir.goverdrive.scala.core.model.{FileMapping, FolderMapping}
+
+
+/**
+  * The part of the mappings a daemon is responsible for. Folder mappings are partitioned by their pk, file mappings
+  * follow their folder mapping, standalone file mappings are partitioned by their own pk.
+  */
+case class SyncScope(partitionCount: Int, partitions: Set[Int]) {
+    def contains(folderMapping: FolderMapping): Boolean = folderMapping.pk.exists(containsKey)
+
+    def contains(fileMapping: FileMapping): Boolean = fileMapping.folderMappingPk.orElse(fileMapping.pk).exists(containsKey)
+
+    private def containsKey(key: Int): Boolean = partitions.contains(SyncScope.partitionOf(key, partitionCount))
+}
+
+object SyncScope {
+    val all = SyncScope(1, Set(0))
+
+    def partitionOf(key: Int, partitionCount: Int): Int = Math.floorMod(key, partitionCount)
+}
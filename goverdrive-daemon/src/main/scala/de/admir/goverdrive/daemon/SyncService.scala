@@ -54,8 +54,9 @@ object SyncService extends StrictLogging {
     }
 
     def deleteDeletedSyncedFolderMappings(folderIsDeletedPredicate: FolderMapping => Boolean,
-                                          deleteFolderAction: FolderMapping => DaemonFeedback Either FolderMapping): Future[FolderDeletes] = {
-        GoverdriveDb.getFolderMappingsFuture flatMap { folderMappings =>
+                                          deleteFolderAction: FolderMapping => DaemonFeedback Either FolderMapping,
+                                          scope: SyncScope = SyncScope.all): Future[FolderDeletes] = {
+        GoverdriveDb.getFolderMappingsFuture.map(_.filter(scope.contains(_))) flatMap { folderMappings =>
             val deletedSyncedFolderMappings: Seq[FolderMapping] = folderMappings.filter(_.syncedAt.isDefined).filter(folderIsDeletedPredicate)
 
             Future.sequence {
@@ -92,59 +93,44 @@ object SyncService extends StrictLogging {
         }
     }
 
-    def syncAddedFilesToFolders[F](realFilesExtractor: FolderMapping => Seq[DaemonFeedback Either F],
+    /**
+      * Streams the real files of every folderMapping and syncs the ones not known yet as soon as they are discovered, the
+      * tree itself is never held in memory. The known paths of a folderMapping are, as well as the sync of every new file
+      * until the folderMapping is done, since each FileSync is part of the result.
+      */
+    def syncAddedFilesToFolders[F](realFilesExtractor: FolderMapping => Iterator[DaemonFeedback Either F],
                                    correctPathExtractor: FileMapping => String,
-                                   fileMappingSyncer: (FolderMapping, String) => Future[FileSync])
+                                   fileMappingSyncer: (FolderMapping, String) => Future[FileSync],
+                                   scope: SyncScope = SyncScope.all)
                                   (implicit ev: FileLike[F]): Future[FileSyncs] = {
-        GoverdriveDb.getFolderMappingsFuture flatMap { folderMappings =>
-            val realFilesInsideFolders: Map[FolderMapping, Seq[DaemonFeedback Either F]] = folderMappings.map(foMapp => (foMapp, realFilesExtractor(foMapp))).toMap
-
-            val realPathsInsideFoldersMap: Map[FolderMapping, Seq[DaemonFeedback Either String]] = realFilesInsideFolders map { case (foMapp, fileEithers) =>
-                (
-                    foMapp,
-                    fileEithers map {
-                        case Left(daemonFeedback) => Left(daemonFeedback)
-                        case Right(fileLike) => Right(ev.path(fileLike))
-                    }
-                )
-            }
-
-            val knownPathsInsideFoldersMapFuture: Future[Map[FolderMapping, Seq[Either[DaemonFeedback, String]]]] =
-                Future.sequence {
-                    folderMappings map { foMapp =>
-                        GoverdriveDb.getFileMappingsByFolderMappingPkFuture(foMapp.pk) map { fileMappings =>
-                            (foMapp, fileMappings.map(correctPathExtractor).map(Right(_)))
-                        }
-                    }
-                }.map(_.toMap)
-
-            val newPathsMapFuture: Future[Map[FolderMapping, Set[DaemonFeedback Either String]]] =
-                knownPathsInsideFoldersMapFuture.map(knownPathsInsideFoldersMap =>
-                    realPathsInsideFoldersMap.keys.map(foMapp =>
-                        (foMapp, realPathsInsideFoldersMap(foMapp).toSet -- knownPathsInsideFoldersMap(foMapp).toSet)
-                    ).toMap
-                )
-
-            val syncedFileMappings = newPathsMapFuture.map(_.toSeq) flatMap { newPathPairs =>
-                Future.sequence {
-                    newPathPairs flatMap {
-                        case (folderMapping, newPathEithers) => newPathEithers.map {
+        GoverdriveDb.getFolderMappingsFuture.map(_.filter(scope.contains(_))) flatMap { folderMappings =>
+            val syncedFileMappings = Future.sequence {
+                folderMappings map { foMapp =>
+                    GoverdriveDb.getFileMappingsByFolderMappingPkFuture(foMapp.pk) flatMap { fileMappings =>
+                        val knownPaths: Set[String] = fileMappings.map(correctPathExtractor).toSet
+
+                        val newPathSyncs: Iterator[Future[FileSync]] = realFilesExtractor(foMapp).map {
+                            case Left(daemonFeedback) => Left(daemonFeedback)
+                            case Right(fileLike) => Right(ev.path(fileLike))
+                        } collect {
                             case Left(daemonFeedback) => Future.successful(Left(daemonFeedback))
-                            case Right(newPath) => fileMappingSyncer(folderMapping, newPath)
+                            case Right(newPath) if !knownPaths.contains(newPath) => fileMappingSyncer(foMapp, newPath)
                         }
+
+                        Future.sequence(newPathSyncs.toList)
                     }
                 }
             }
-            syncedFileMappings
+            syncedFileMappings.map(_.flatten)
         }
     }
 
-    def realFilesExtractor[F](folderMapping: FolderMapping)(implicit ev: FileLike[F]): Seq[DaemonFeedback Either F] = {
+    def realFilesExtractor[F](folderMapping: FolderMapping)(implicit ev: FileLike[F]): Iterator[DaemonFeedback Either F] = {
         ev.folder(folderMapping) match {
             case Left(driveError) =>
-                Seq(Left(DaemonFeedback(s"Error while getting ${ev.origin} folder: ${folderMapping.remotePath}", driveError)))
+                Iterator(Left(DaemonFeedback(s"Error while getting ${ev.origin} folder: ${folderMapping.remotePath}", driveError)))
             case Right(folder) =>
-                ev.fileTree(folder, onlyFiles = true) map {
+                ev.fileTreeIterator(folder, onlyFiles = true) map {
                     case Left(coreFeedback) =>
                         Left(DaemonFeedback(s"Error while reading fileTree for ${ev.origin} folder: $folder", coreFeedback))
                     case Right(fileLike) => Right(fileLike)
@@ -152,10 +138,30 @@ object SyncService extends StrictLogging {
         }
     }
 
-    def sync: Future[SyncResult] = {
-        GoverdriveDb.getFileMappingsFuture.flatMap(fileMappings => {
+    /**
+      * A worker that holds only part of the partitions reads the fileMappings of its folderMappings through the
+      * FOLDER_MAPPING_PK index instead of the whole FILE_MAPPING table. Holding all partitions, one read of the table
+      * is cheaper than a query per folderMapping.
+      */
+    def scopedFileMappingsFuture(scope: SyncScope): Future[Seq[FileMapping]] =
+        if (scope.partitions.size >= scope.partitionCount)
+            GoverdriveDb.getFileMappingsFuture
+        else for {
+            folderMappings <- GoverdriveDb.getFolderMappingsFuture.map(_.filter(scope.contains(_)))
+            folderFileMappings <- Future.sequence(folderMappings.map(folderMapping => GoverdriveDb.getFileMappingsByFolderMappingPkFuture(folderMapping.pk)))
+            standaloneFileMappings <- GoverdriveDb.getStandaloneFileMappingsFuture.map(_.filter(scope.contains(_)))
+        } yield folderFileMappings.flatten ++ standaloneFileMappings
+
+    def sync(scope: SyncScope = SyncScope.all): Future[SyncResult] = {
+        val syncStartedAt = new Timestamp(System.currentTimeMillis)
+        scopedFileMappingsFuture(scope).flatMap(fileMappings => {
             val syncedFileMappings = fileMappings.filter(_.fileId.isDefined)
 
+            /**
+              * Remote files whose content is already present locally are copied instead of downloaded
+              */
+            val contentIndex = ContentIndex(syncedFileMappings)
+
             /**
               * Check for locally deleted files, if (synced) { delete them remotely and remove fileMapping entry }
               **/
@@ -195,7 +201,8 @@ object SyncService extends StrictLogging {
                             logger.error(errorMsg)
                             Left(DaemonFeedback(errorMsg, driveError))
                         case _ => Right(folderMapping)
-                    }
+                    },
+                scope
             )
 
             /**
@@ -216,7 +223,8 @@ object SyncService extends StrictLogging {
                         case Success((deletedCount, remainingCount)) =>
                             logger.info(s"Deleted $deletedCount from ${folderMapping.localPath}, remaining : $remainingCount")
                             Right(folderMapping)
-                    }
+                    },
+                scope
             )
 
             // TODO: Handle files that were deleted both locally and remotely (just remove the fileMappings)
@@ -233,8 +241,9 @@ object SyncService extends StrictLogging {
                         remotePath = path,
                         folderMappingPk = folderMapping.pk
                     )
-                    syncRemoteToLocalFuture(Seq(fileMapping)).map(_.head)
-                }
+                    syncRemoteToLocalFuture(Seq(fileMapping), contentIndex).map(_.head)
+                },
+                scope = scope
             )
 
 
@@ -251,16 +260,22 @@ object SyncService extends StrictLogging {
                         folderMappingPk = folderMapping.pk
                     )
                     syncLocalToRemoteFuture(Seq(fileMapping)).map(_.head)
-                }
+                },
+                scope = scope
             )
 
             val syncedToRemoteFilesFuture: Future[FileSyncs] = syncLocalToRemoteFuture(filterLocalToRemoteSyncables(fileMappings))
 
             /**
-              * Get the updated fileMappings from the DB again to prevent syncing from remote to local right after syncing from local to remote
+              * Get the fileMappings synced from local to remote during this pass to prevent syncing them back from remote to local right away,
+              * only those rows are read again instead of the whole table
               */
-            val syncedToLocalFilesFuture: Future[FileSyncs] = GoverdriveDb.getFileMappingsFuture flatMap { updatedFileMappings =>
-                syncRemoteToLocalFuture(filterRemoteToLocalSyncables(updatedFileMappings))
+            val syncedToLocalFilesFuture: Future[FileSyncs] = syncedToRemoteFilesFuture flatMap { _ =>
+                GoverdriveDb.getFileMappingsSyncedSinceFuture(syncStartedAt) flatMap { resyncedFileMappings =>
+                    val resyncedFileMappingsByPk = resyncedFileMappings.map(fileMapping => (fileMapping.pk, fileMapping)).toMap
+                    val updatedFileMappings = fileMappings.map(fileMapping => resyncedFileMappingsByPk.getOrElse(fileMapping.pk, fileMapping))
+                    syncRemoteToLocalFuture(filterRemoteToLocalSyncables(updatedFileMappings), contentIndex)
+                }
             }
 
             for {
@@ -279,7 +294,8 @@ object SyncService extends StrictLogging {
                 deletedSyncedLocalFolderMappings,
                 deletedSyncedRemoteFolderMappings,
                 syncedToRemoteFiles ++ newlyAddedFilesToLocalFolders,
-                syncedToLocalFiles ++ newlyAddedFilesToRemoteFolders
+                syncedToLocalFiles ++ newlyAddedFilesToRemoteFolders,
+                contentIndex.savedDownloadBytes
             )
         })
     }
@@ -351,12 +367,14 @@ object SyncService extends StrictLogging {
         }
     }
 
-    def syncRemoteToLocalFuture(fileMappings: Seq[FileMapping]): Future[FileSyncs] = {
+    def syncRemoteToLocalFuture(fileMappings: Seq[FileMapping], contentIndex: ContentIndex): Future[FileSyncs] = {
         Future.sequence {
             fileMappings map { fileMapping =>
                 GoverdriveService.getFile(fileMapping.remotePath) match {
                     case Left(error) =>
                         Future.successful(Left(DaemonFeedback(s"Could not find remote file: ${fileMapping.remotePath}", error)))
+                    case Right(driveFile) if contentIndex.copyLocally(driveFile, fileMapping.localPath) =>
+                        updateFileMappingAndOptionallyFolderMapping(fileMapping, driveFile.getId)
                     case Right(driveFile) =>
                         GoverdriveService.getFileStream(fileMapping.remotePath) match {
                             case Left(error) =>
@@ -373,6 +391,7 @@ object SyncService extends StrictLogging {
                                                 case Failure(t) =>
                                                     Future.successful(Left(DaemonFeedback(t)))
                                                 case Success(_) =>
+                                                    contentIndex.add(driveFile, fileMapping.localPath)
                                                     updateFileMappingAndOptionallyFolderMapping(fileMapping, driveFile.getId)
                                             }
                                         }
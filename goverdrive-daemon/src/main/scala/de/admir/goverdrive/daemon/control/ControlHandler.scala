@@ -0,0 +1,40 @@
+package de.admir.goverdrive.daemon.control
+
+import de.admir.goverdrive.daemon.SyncRunner
+import de.admir.goverdrive.scala.core.control.ControlProtocol._
+import de.admir.goverdrive.scala.core.control.ControlRequest
+import de.admir.goverdrive.scala.core.db.GoverdriveDb
+import de.admir.goverdrive.scala.core.{BulkMappingProcessor, MappingProcessor}
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.io.Source
+import scala.language.postfixOps
+
+
+/**
+  * Executes control requests inside the daemon, reusing its DB pool, Drive credentials and caches
+  */
+class ControlHandler(syncRunner: SyncRunner) extends (ControlRequest => String) {
+
+    override def apply(request: ControlRequest): String = request match {
+        case ControlRequest(MAP, Seq(localPath, remotePath), _) =>
+            MappingProcessor.processMapping(localPath, remotePath) match {
+                case Left(coreFeedback) =>
+                    error(coreFeedback.toString)
+                case Right(mappingResult) =>
+                    ok(s"Added ${mappingResult.fileMappings} file mappings, failures: ${mappingResult.feedbacks.mkString(", ")}")
+            }
+        case ControlRequest(IMPORT, _, body) =>
+            ok(BulkMappingProcessor.processMappings(Source.fromString(body.mkString("\n"))).toString)
+        case ControlRequest(STATUS, _, _) =>
+            val folderMappingCount = Await.result(GoverdriveDb.countFolderMappingsFuture, 30 seconds)
+            val fileMappingCount = Await.result(GoverdriveDb.countFileMappingsFuture, 30 seconds)
+            val lastSync = syncRunner.lastSyncResult.map { case (syncedAt, result) => s"$syncedAt, $result" }.getOrElse("none")
+            ok(s"folderMappings: $folderMappingCount, fileMappings: $fileMappingCount, lastSync: $lastSync")
+        case ControlRequest(SYNC, _, _) =>
+            ok(syncRunner.syncNow().toString)
+        case _ =>
+            error(s"Unknown control request: $request")
+    }
+}
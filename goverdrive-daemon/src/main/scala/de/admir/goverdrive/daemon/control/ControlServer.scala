@@ -0,0 +1,75 @@
+package de.admir.goverdrive.daemon.control
+
+import java.io.{BufferedReader, InputStreamReader, OutputStreamWriter, PrintWriter}
+import java.net.{InetAddress, ServerSocket, Socket}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Executors
+
+import com.typesafe.scalalogging.StrictLogging
+import de.admir.goverdrive.scala.core.control.{ControlProtocol, ControlRequest, ControlToken}
+import net.java.truecommons.shed.ResourceLoan._
+
+import scala.util.control.NonFatal
+import scala.util.{Failure, Success, Try}
+
+
+/**
+  * Accepts control requests on the loopback interface only, so that goverdrive-client can use the warm daemon.
+  * Requests without the ControlToken are rejected before their body is read.
+  */
+class ControlServer(port: Int, token: String, handler: ControlRequest => String) extends StrictLogging {
+    private val serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress)
+    private val requestExecutor = Executors.newCachedThreadPool()
+
+    def localPort: Int = serverSocket.getLocalPort
+
+    def start(): Unit = {
+        val acceptor = new Thread(new Runnable {
+            override def run(): Unit = acceptConnections()
+        }, "goverdrive-control")
+        acceptor.setDaemon(true)
+        acceptor.start()
+        logger.info(s"Listening for control requests on ${serverSocket.getLocalSocketAddress}")
+    }
+
+    def stop(): Unit = {
+        serverSocket.close()
+        requestExecutor.shutdown()
+    }
+
+    private def acceptConnections(): Unit =
+        while (!serverSocket.isClosed) {
+            Try(serverSocket.accept()) match {
+                case Success(socket) =>
+                    requestExecutor.execute(new Runnable {
+                        override def run(): Unit = handleConnection(socket)
+                    })
+                case Failure(t) if !serverSocket.isClosed =>
+                    logger.error("Error while accepting control connection", t)
+                case Failure(_) =>
+            }
+        }
+
+    private def handleConnection(socket: Socket): Unit =
+        loan(socket) to { s =>
+            val reader = new BufferedReader(new InputStreamReader(s.getInputStream, StandardCharsets.UTF_8))
+            val writer = new PrintWriter(new OutputStreamWriter(s.getOutputStream, StandardCharsets.UTF_8), true)
+            val authenticated = Option(reader.readLine()).exists(ControlToken.matches(token, _))
+            lazy val lines = Iterator.continually(reader.readLine()).takeWhile(_ != null).toList
+            val response = if (!authenticated) {
+                logger.warn(s"Rejected control request without valid token from ${s.getRemoteSocketAddress}")
+                ControlProtocol.error("Invalid control token")
+            } else ControlProtocol.parseRequest(lines) match {
+                case None =>
+                    ControlProtocol.error(s"Could not parse control request: ${lines.headOption.getOrElse("")}")
+                case Some(request) =>
+                    logger.info(s"Handling control request: ${request.command}")
+                    try handler(request) catch {
+                        case NonFatal(t) =>
+                            logger.error(s"Error while handling control request: $request", t)
+                            ControlProtocol.error(t.toString)
+                    }
+            }
+            writer.println(response)
+        }
+}
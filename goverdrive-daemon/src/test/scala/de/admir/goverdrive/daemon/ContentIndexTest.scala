@@ -0,0 +1,104 @@
+package de.admir.goverdrive.daemon
+
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import com.google.api.services.drive.model.{File => GFile}
+import com.google.common.hash.Hashing
+import de.admir.goverdrive.scala.core.util.LinkMode
+import org.junit.runner.RunWith
+import org.scalatest.FunSuite
+import org.scalatest.junit.JUnitRunner
+
+
+@RunWith(classOf[JUnitRunner])
+class ContentIndexTest extends FunSuite {
+
+    def withTempFolder[T](test: File => T): T = {
+        val folder = Files.createTempDirectory("content-index").toFile
+        try test(folder) finally {
+            Option(folder.listFiles).toSeq.flatten.foreach(_.delete())
+            folder.delete()
+        }
+    }
+
+    def write(file: File, content: String): File = {
+        Files.write(file.toPath, content.getBytes(StandardCharsets.UTF_8))
+        file
+    }
+
+    def read(file: File): String = new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8)
+
+    def driveFile(content: String): GFile = {
+        val bytes = content.getBytes(StandardCharsets.UTF_8)
+        new GFile().setMd5Checksum(Hashing.md5().hashBytes(bytes).toString).setSize(bytes.length.toLong)
+    }
+
+    test("present content is copied and the saved download bytes add up") {
+        withTempFolder { folder =>
+            val source = write(new File(folder, "source"), "content")
+            val contentIndex = new ContentIndex(LinkMode.COPY)
+            contentIndex.add(driveFile("content"), source.getPath)
+
+            assert(contentIndex.copyLocally(driveFile("content"), new File(folder, "first").getPath))
+            assert(contentIndex.copyLocally(driveFile("content"), new File(folder, "second").getPath))
+            assert(read(new File(folder, "first")) == "content")
+            assert(read(new File(folder, "second")) == "content")
+            assert(contentIndex.savedDownloadBytes == 2 * "content".length)
+            assert(folder.list.toSet == Set("source", "first", "second"))
+        }
+    }
+
+    test("an existing target is replaced by the copy") {
+        withTempFolder { folder =>
+            val source = write(new File(folder, "source"), "new content")
+            val target = write(new File(folder, "target"), "old content")
+            val contentIndex = new ContentIndex(LinkMode.COPY)
+            contentIndex.add(driveFile("new content"), source.getPath)
+
+            assert(contentIndex.copyLocally(driveFile("new content"), target.getPath))
+            assert(read(target) == "new content")
+        }
+    }
+
+    test("a candidate that changed since it was indexed is dropped and the file is downloaded") {
+        withTempFolder { folder =>
+            val source = write(new File(folder, "source"), "content")
+            val contentIndex = new ContentIndex(LinkMode.COPY)
+            contentIndex.add(driveFile("content"), source.getPath)
+            write(source, "CONTENT")
+
+            val target = new File(folder, "target")
+            assert(!contentIndex.copyLocally(driveFile("content"), target.getPath))
+            assert(!target.exists)
+            assert(folder.list.toSet == Set("source"))
+
+            write(source, "content")
+            assert(!contentIndex.copyLocally(driveFile("content"), target.getPath))
+            assert(contentIndex.savedDownloadBytes == 0)
+        }
+    }
+
+    test("a file is not copied onto itself") {
+        withTempFolder { folder =>
+            val source = write(new File(folder, "source"), "content")
+            val contentIndex = new ContentIndex(LinkMode.COPY)
+            contentIndex.add(driveFile("content"), source.getPath)
+
+            assert(!contentIndex.copyLocally(driveFile("content"), source.getPath))
+            assert(read(source) == "content")
+            assert(contentIndex.savedDownloadBytes == 0)
+        }
+    }
+
+    test("files without md5Checksum are always downloaded") {
+        withTempFolder { folder =>
+            val source = write(new File(folder, "source"), "content")
+            val contentIndex = new ContentIndex(LinkMode.COPY)
+            contentIndex.add(new GFile().setSize(7L), source.getPath)
+
+            assert(!contentIndex.copyLocally(new GFile().setSize(7L), new File(folder, "target").getPath))
+        }
+    }
+}
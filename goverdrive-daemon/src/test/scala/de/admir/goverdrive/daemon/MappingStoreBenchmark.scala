@@ -0,0 +1,98 @@
+package de.admir.goverdrive.daemon
+
+import java.nio.file.Files
+import java.sql.Timestamp
+
+import com.typesafe.config.ConfigFactory
+import de.admir.goverdrive.scala.core.db.GoverdriveDb
+import de.admir.goverdrive.scala.core.model.{FileMapping, FolderMapping}
+
+import scala.concurrent.Await
+import scala.concurrent.duration._
+import scala.language.postfixOps
+import scala.util.Random
+
+
+/**
+  * Compares the full FILE_MAPPING reads of a sync pass with the indexed queries on the embedded store.
+  * Runs against a temporary database, usage: MappingStoreBenchmark [fileMappingCount], default 1000000.
+  */
+object MappingStoreBenchmark extends App {
+    System.setProperty("goverdrive.db.store", "embedded")
+    System.setProperty("goverdrive.db.folder", Files.createTempDirectory("goverdrive-benchmark").toString)
+    ConfigFactory.invalidateCaches()
+
+    val fileMappingCount = args.headOption.map(_.toInt).getOrElse(1000000)
+    val changedCount = 1000
+    val lookupCount = 1000
+    val batchSize = 5000
+
+    def timed[T](name: String)(block: => T): T = {
+        val startedAt = System.nanoTime
+        val result = block
+        println(f"$name%-45s ${(System.nanoTime - startedAt) / 1000000.0}%10.1f ms")
+        result
+    }
+
+    val syncedBefore = new Timestamp(System.currentTimeMillis - 1.hour.toMillis)
+    val changedSince = new Timestamp(System.currentTimeMillis - 1.minute.toMillis)
+    val changedAt = new Timestamp(System.currentTimeMillis)
+
+    GoverdriveDb.initDb()
+
+    val folderMappingCount = 64
+    val partitionCount = 16
+    val folderMappings = (0 until folderMappingCount) map { folder =>
+        Await.result(GoverdriveDb.insertFolderMappingFuture(FolderMapping(localPath = s"/benchmark-$folder", remotePath = s"/benchmark-$folder")), 30 seconds)
+    }
+
+    def pathOf(index: Int): String = s"/benchmark-${index % folderMappingCount}/folder-${index % 1000}/file-$index"
+
+    timed(s"insert $fileMappingCount file mappings") {
+        (0 until fileMappingCount).grouped(batchSize) foreach { indexes =>
+            val batch = indexes map { index =>
+                FileMapping(
+                    fileId = Some(s"file-$index"),
+                    localPath = pathOf(index),
+                    remotePath = pathOf(index),
+                    syncedAt = Some(if (index >= fileMappingCount - changedCount) changedAt else syncedBefore),
+                    folderMappingPk = folderMappings(index % folderMappingCount).pk
+                )
+            }
+            Await.result(GoverdriveDb.insertFileMappingsIfAbsentFuture(batch), 1 minute)
+        }
+    }
+
+    val fullReads = timed("full read path (2 x getFileMappingsFuture)") {
+        Await.result(GoverdriveDb.getFileMappingsFuture, 5 minutes).size + Await.result(GoverdriveDb.getFileMappingsFuture, 5 minutes).size
+    }
+
+    val firstFullRead = timed("full read path (1 x getFileMappingsFuture)") {
+        Await.result(GoverdriveDb.getFileMappingsFuture, 5 minutes).size
+    }
+
+    val scopedRead = timed(s"scoped read (1 of $partitionCount partitions)") {
+        Await.result(SyncService.scopedFileMappingsFuture(SyncScope(partitionCount, Set(0))), 5 minutes).size
+    }
+
+    val changed = timed(s"synced since query ($changedCount changed)") {
+        Await.result(GoverdriveDb.getFileMappingsSyncedSinceFuture(changedSince), 1 minute).size
+    }
+
+    val remotePathLookups = timed(s"$lookupCount lookups by remote path") {
+        (1 to lookupCount).map { _ =>
+            val index = Random.nextInt(fileMappingCount)
+            Await.result(GoverdriveDb.getFileMappingsByRemotePathFuture(pathOf(index)), 30 seconds).size
+        }.sum
+    }
+
+    val localPathLookups = timed(s"$lookupCount lookups by local path") {
+        (1 to lookupCount).count { _ =>
+            val index = Random.nextInt(fileMappingCount)
+            Await.result(GoverdriveDb.getFileMappingByLocalPathFuture(pathOf(index)), 30 seconds).isDefined
+        }
+    }
+
+    println(s"rows read: full = $fullReads, single full = $firstFullRead, scoped = $scopedRead, changed = $changed, remote lookups = $remotePathLookups, local lookups = $localPathLookups")
+    GoverdriveDb.tearDownDb()
+}
@@ -0,0 +1,81 @@
+package de.admir.goverdrive.daemon
+
+import de.admir.goverdrive.scala.core.db.GoverdriveDb
+import org.junit.runner.RunWith
+import org.scalatest.junit.JUnitRunner
+import org.scalatest.{BeforeAndAfterAll, FunSuite}
+
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
+import scala.language.postfixOps
+
+
+/**
+  * Runs against the embedded store, every test releases the leases and removes the workers it created
+  */
+@RunWith(classOf[JUnitRunner])
+class PartitionLeaseManagerTest extends FunSuite with BeforeAndAfterAll {
+    val partitionCount = 4
+    val allPartitions = (0 until partitionCount).toSet
+
+    override def beforeAll(): Unit = GoverdriveDb.initDb()
+
+    def withWorkers[T](workerIds: String*)(leaseDurationMillis: Long)(test: Seq[PartitionLeaseManager] => T): T = {
+        val leaseManagers = workerIds.map(new PartitionLeaseManager(_, partitionCount, leaseDurationMillis))
+        try test(leaseManagers) finally leaseManagers.foreach(leaseManager => Await.result(leaseManager.releaseLeases(), 10 seconds))
+    }
+
+    def refresh(leaseManager: PartitionLeaseManager): Set[Int] = Await.result(leaseManager.refreshLeases(), 10 seconds)
+
+    def releaseSurplus(leaseManager: PartitionLeaseManager): Set[Int] = Await.result(leaseManager.releaseSurplusLeases(), 10 seconds)
+
+    test("a single worker claims all partitions") {
+        withWorkers("single")(10000) { case Seq(single) =>
+            assert(refresh(single) == allPartitions)
+            assert(single.scope == SyncScope(partitionCount, allPartitions))
+            assert(refresh(single) == allPartitions)
+        }
+    }
+
+    test("a refresh never gives up held partitions, the surplus is only released on request") {
+        withWorkers("first", "joining")(10000) { case Seq(first, joining) =>
+            assert(refresh(first) == allPartitions)
+            assert(refresh(joining) == Set.empty)
+            assert(refresh(first) == allPartitions)
+
+            val kept = releaseSurplus(first)
+            assert(kept.size == partitionCount / 2)
+            assert(refresh(joining) == allPartitions -- kept)
+            assert(refresh(first) == kept)
+        }
+    }
+
+    test("the partitions of a worker that stopped renewing are taken over after the lease expired") {
+        withWorkers("stopped", "survivor")(500) { case Seq(stopped, survivor) =>
+            assert(refresh(stopped) == allPartitions)
+            assert(refresh(survivor) == Set.empty)
+            Thread.sleep(700)
+            assert(refresh(survivor) == allPartitions)
+        }
+    }
+
+    test("released partitions are taken over right away") {
+        withWorkers("leaving", "staying")(10000) { case Seq(leaving, staying) =>
+            assert(refresh(leaving) == allPartitions)
+            Await.result(leaving.releaseLeases(), 10 seconds)
+            assert(refresh(staying) == allPartitions)
+        }
+    }
+
+    test("concurrent refreshes never hand a partition to two workers") {
+        withWorkers("concurrent-1", "concurrent-2", "concurrent-3")(10000) { leaseManagers =>
+            (1 to 5) foreach { _ =>
+                val partitions = Await.result(Future.sequence(leaseManagers.map(_.refreshLeases())), 30 seconds)
+                assert(partitions.map(_.size).sum == partitions.flatten.toSet.size)
+                leaseManagers.foreach(releaseSurplus)
+            }
+            assert(leaseManagers.map(refresh).flatten.toSet == allPartitions)
+        }
+    }
+}
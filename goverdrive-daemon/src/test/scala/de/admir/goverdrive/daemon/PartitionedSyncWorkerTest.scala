@@ -0,0 +1,112 @@
+package de.admir.goverdrive.daemon
+
+import java.util.concurrent.{ConcurrentHashMap, CountDownLatch, TimeUnit}
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicInteger}
+
+import de.admir.goverdrive.scala.core.db.GoverdriveDb
+import org.junit.runner.RunWith
+import org.scalatest.junit.JUnitRunner
+import org.scalatest.{BeforeAndAfterAll, FunSuite}
+
+import scala.collection.JavaConversions._
+import scala.concurrent.duration._
+import scala.concurrent.{Await, Future}
+import scala.language.postfixOps
+
+
+/**
+  * Several workers run against the embedded store with a stand-in for the sync pass, which records the synced partitions
+  */
+@RunWith(classOf[JUnitRunner])
+class PartitionedSyncWorkerTest extends FunSuite with BeforeAndAfterAll {
+    val partitionCount = 4
+
+    override def beforeAll(): Unit = GoverdriveDb.initDb()
+
+    class RecordingSync(passMillis: Long) {
+        val syncingWorkers = new ConcurrentHashMap[Int, String]()
+        val passesByWorker = new ConcurrentHashMap[String, AtomicInteger]()
+        val syncedPartitions = ConcurrentHashMap.newKeySet[Int]()
+        val overlapped = new AtomicBoolean(false)
+
+        def syncPass(workerId: String)(scope: SyncScope): Future[SyncResult] = {
+            scope.partitions foreach { partition =>
+                if (syncingWorkers.putIfAbsent(partition, workerId) != null)
+                    overlapped.set(true)
+            }
+            Thread.sleep(passMillis)
+            scope.partitions.foreach(syncingWorkers.remove(_, workerId))
+            scope.partitions.foreach(syncedPartitions.add)
+            passesByWorker.putIfAbsent(workerId, new AtomicInteger())
+            passesByWorker.get(workerId).incrementAndGet()
+            Future.successful(SyncResult(Nil, Nil, Nil, Nil, Nil, Nil))
+        }
+    }
+
+    def runWorkers(recordingSync: RecordingSync, workerIds: Seq[String], runMillis: Long): Unit = {
+        val threads = workerIds map { workerId =>
+            val worker = new PartitionedSyncWorker(new PartitionLeaseManager(workerId, partitionCount, 2000), 10, 2000, recordingSync.syncPass(workerId))
+            new Thread(new Runnable {
+                override def run(): Unit = try worker.run() catch {
+                    case _: InterruptedException =>
+                }
+            })
+        }
+        threads.foreach(_.start())
+        Thread.sleep(runMillis)
+        threads.foreach(_.interrupt())
+        threads.foreach(_.join(10000))
+        assert(threads.forall(!_.isAlive))
+    }
+
+    test("workers share the partitions and never sync a partition at the same time") {
+        val recordingSync = new RecordingSync(passMillis = 50)
+        runWorkers(recordingSync, Seq("worker-1", "worker-2"), runMillis = 4000)
+
+        assert(!recordingSync.overlapped.get)
+        assert(recordingSync.syncedPartitions.toSet == (0 until partitionCount).toSet)
+        assert(recordingSync.passesByWorker.keySet.toSet == Set("worker-1", "worker-2"))
+    }
+
+    test("a failing sync pass does not stop the worker") {
+        val passes = new AtomicInteger()
+        val worker = new PartitionedSyncWorker(new PartitionLeaseManager("failing", partitionCount, 2000), 10, 2000, { _ =>
+            passes.incrementAndGet()
+            Future.failed(new IllegalStateException("Sync failed"))
+        })
+        val thread = new Thread(new Runnable {
+            override def run(): Unit = try worker.run() catch {
+                case _: InterruptedException =>
+            }
+        })
+        thread.start()
+        Thread.sleep(1000)
+        thread.interrupt()
+        thread.join(10000)
+        assert(passes.get > 1)
+    }
+
+    test("shutdown lets the running pass finish and releases the leases") {
+        val passStarted = new CountDownLatch(1)
+        val finishedPasses = new AtomicInteger()
+        val worker = new PartitionedSyncWorker(new PartitionLeaseManager("stopping", partitionCount, 2000), 10, 2000, { _ =>
+            passStarted.countDown()
+            Thread.sleep(500)
+            finishedPasses.incrementAndGet()
+            Future.successful(SyncResult(Nil, Nil, Nil, Nil, Nil, Nil))
+        })
+        val thread = new Thread(new Runnable {
+            override def run(): Unit = worker.run()
+        })
+        thread.start()
+        assert(passStarted.await(10, TimeUnit.SECONDS))
+        worker.shutdown()
+        thread.join(10000)
+
+        assert(!thread.isAlive)
+        assert(finishedPasses.get == 1)
+        val successor = new PartitionLeaseManager("successor", partitionCount, 2000)
+        try assert(Await.result(successor.refreshLeases(), 10 seconds) == (0 until partitionCount).toSet)
+        finally Await.result(successor.releaseLeases(), 10 seconds)
+    }
+}
@@ -0,0 +1,39 @@
+package de.admir.goverdrive.daemon
+
+import de.admir.goverdrive.scala.core.model.{FileMapping, FolderMapping}
+import org.junit.runner.RunWith
+import org.scalatest.FunSuite
+import org.scalatest.junit.JUnitRunner
+
+
+@RunWith(classOf[JUnitRunner])
+class SyncScopeTest extends FunSuite {
+
+    test("partitionOf spreads the keys over all partitions, negative keys included") {
+        assert((0 until 8).map(SyncScope.partitionOf(_, 4)) == Seq(0, 1, 2, 3, 0, 1, 2, 3))
+        assert(SyncScope.partitionOf(-1, 4) == 3)
+        assert(SyncScope.partitionOf(Int.MinValue, 4) == 0)
+    }
+
+    test("file mappings follow the partition of their folder mapping") {
+        val scope = SyncScope(4, Set(1))
+        assert(scope.contains(FolderMapping(pk = Some(5), localPath = "/l", remotePath = "/r")))
+        assert(scope.contains(FileMapping(pk = Some(2), localPath = "/l/f", remotePath = "/r/f", folderMappingPk = Some(5))))
+        assert(!scope.contains(FileMapping(pk = Some(5), localPath = "/l/f", remotePath = "/r/f", folderMappingPk = Some(2))))
+    }
+
+    test("standalone file mappings are partitioned by their own pk") {
+        val scope = SyncScope(4, Set(1))
+        assert(scope.contains(FileMapping(pk = Some(9), localPath = "/f", remotePath = "/f")))
+        assert(!scope.contains(FileMapping(pk = Some(10), localPath = "/f", remotePath = "/f")))
+    }
+
+    test("mappings without pk are in no scope") {
+        assert(!SyncScope.all.contains(FolderMapping(localPath = "/l", remotePath = "/r")))
+        assert(!SyncScope.all.contains(FileMapping(localPath = "/f", remotePath = "/f")))
+    }
+
+    test("the scope of a single worker contains every mapping") {
+        assert((-3 to 3).forall(pk => SyncScope.all.contains(FolderMapping(pk = Some(pk), localPath = "/l", remotePath = "/r"))))
+    }
+}
@@ -0,0 +1,45 @@
+package de.admir.goverdrive.daemon.control
+
+import java.io.{BufferedReader, InputStreamReader, OutputStreamWriter, PrintWriter}
+import java.net.{InetAddress, Socket}
+import java.nio.charset.StandardCharsets
+
+import de.admir.goverdrive.scala.core.control.{ControlProtocol, ControlRequest}
+import net.java.truecommons.shed.ResourceLoan._
+import org.junit.runner.RunWith
+import org.scalatest.junit.JUnitRunner
+import org.scalatest.{BeforeAndAfterAll, FunSuite}
+
+
+@RunWith(classOf[JUnitRunner])
+class ControlServerTest extends FunSuite with BeforeAndAfterAll {
+    val token = "secret"
+    val server = new ControlServer(0, token, request => ControlProtocol.ok(request.args.mkString(" ")))
+
+    override def beforeAll(): Unit = server.start()
+
+    override def afterAll(): Unit = server.stop()
+
+    def send(lines: Seq[String]): String =
+        loan(new Socket(InetAddress.getLoopbackAddress, server.localPort)) to { socket =>
+            val writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream, StandardCharsets.UTF_8))
+            lines.foreach(writer.println)
+            writer.flush()
+            socket.shutdownOutput()
+            new BufferedReader(new InputStreamReader(socket.getInputStream, StandardCharsets.UTF_8)).readLine()
+        }
+
+    test("requests with the token are handled, UTF-8 in both directions") {
+        assert(send(ControlProtocol.formatRequest(token, ControlRequest(ControlProtocol.MAP, Seq("/lokal/Größe", "/€")))) == "OK /lokal/Größe /€")
+    }
+
+    test("requests with a wrong or without token are rejected") {
+        assert(send(ControlProtocol.formatRequest("guessed", ControlRequest(ControlProtocol.STATUS))) == "ERROR Invalid control token")
+        assert(send(Seq(ControlProtocol.STATUS)) == "ERROR Invalid control token")
+        assert(send(Nil) == "ERROR Invalid control token")
+    }
+
+    test("unparsable requests are answered with an error") {
+        assert(!ControlProtocol.isOk(send(Seq(token))))
+    }
+}